@@ -0,0 +1,31 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.batch")
+public class BatchSettings {
+    /**
+     * Кол-во строк index_e, накопленных до записи в БД
+     */
+    private int size = 5000;
+    /**
+     * Максимальное время хранения накопленных строк до записи в БД
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+    /**
+     * Кол-во попыток записи пакета при ошибке БД
+     */
+    private int retries = 3;
+    /**
+     * Пауза перед повторной записью пакета, увеличивается с каждой попыткой
+     */
+    private Duration retryDelay = Duration.ofSeconds(1);
+}
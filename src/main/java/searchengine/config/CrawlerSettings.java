@@ -0,0 +1,47 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawler")
+public class CrawlerSettings {
+    /**
+     * Режим обхода сайта
+     */
+    private CrawlerMode mode = CrawlerMode.PRIORITY;
+    /**
+     * Максимальное кол-во одновременных запросов к одному хосту
+     */
+    private int maxConnectionsPerHost = 32;
+    /**
+     * Повторная индексация проиндексированного сайта без удаления страниц:
+     * условные запросы и пересчёт лемм только для изменившихся страниц
+     */
+    private boolean incremental = false;
+    /**
+     * Потоковый разбор страниц без построения DOM ({@code false} - разбор Jsoup в Document)
+     */
+    private boolean streamingParse = true;
+
+    public enum CrawlerMode {
+        /**
+         * Рабочие потоки берут ссылки из очереди по приоритету (глубина, кол-во ссылок на страницу,
+         * приоритет и свежесть в карте сайта), с ограничениями глубины, кол-ва страниц и времени
+         */
+        PRIORITY,
+        /**
+         * Рекурсивные задачи в ForkJoinPool на 120 потоков
+         */
+        FORK_JOIN,
+        /**
+         * Каждая загрузка в отдельном виртуальном потоке (Java 21+),
+         * на более ранних версиях - в пуле обычных потоков
+         */
+        VIRTUAL_THREADS
+    }
+}
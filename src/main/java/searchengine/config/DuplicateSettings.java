@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.duplicates")
+public class DuplicateSettings {
+    /**
+     * Не сохранять и не индексировать почти одинаковые страницы сайта
+     */
+    private boolean enabled = true;
+    /**
+     * Наибольшее кол-во отличающихся бит SimHash у дубликатов (из 64)
+     */
+    private int maxDistance = 3;
+    /**
+     * Минимальное кол-во слов на странице, более короткие страницы не проверяются
+     */
+    private int minWords = 50;
+    /**
+     * Кол-во примеров дубликатов в отчёте по каждому сайту
+     */
+    private int reportExamples = 20;
+}
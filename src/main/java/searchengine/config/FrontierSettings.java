@@ -0,0 +1,55 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.frontier")
+public class FrontierSettings {
+    /**
+     * Каталог файлов с найденными ссылками сайтов
+     */
+    private String directory = "frontier";
+    /**
+     * Продолжать обход сайта со статусом FAILED вместо полной переиндексации
+     */
+    private boolean resume = true;
+    /**
+     * Кол-во ссылок, после которого файл сбрасывается на диск
+     */
+    private int flushEvery = 100;
+    /**
+     * Наибольшая глубина ссылки от главной страницы, 0 - без ограничения (режим обхода priority)
+     */
+    private int maxDepth = 0;
+    /**
+     * Наибольшее кол-во загружаемых страниц сайта, 0 - без ограничения (режим обхода priority)
+     */
+    private int maxPages = 0;
+    /**
+     * Время на обход сайта, 0 - без ограничения (режим обхода priority)
+     */
+    private Duration timeBudget = Duration.ZERO;
+    /**
+     * Веса составляющих приоритета ссылки: близость к главной странице,
+     * кол-во ссылок на страницу, приоритет из карты сайта, свежесть по lastmod
+     */
+    private double depthWeight = 2.0;
+    private double inlinkWeight = 0.5;
+    private double sitemapWeight = 0.5;
+    private double freshnessWeight = 0.5;
+    /**
+     * Наименьший прирост приоритета ссылки от новых ссылок на неё, при котором она переставляется в очереди
+     */
+    private double rescoreThreshold = 0.05;
+    /**
+     * Срок, за который вклад свежести страницы уменьшается вдвое
+     */
+    private Duration freshnessHalfLife = Duration.ofDays(30);
+}
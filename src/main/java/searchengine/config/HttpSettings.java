@@ -0,0 +1,37 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.http")
+public class HttpSettings {
+    private String userAgent =
+            "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
+    private String referrer = "http://www.google.com";
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    /**
+     * Время ожидания заголовков ответа
+     */
+    private Duration readTimeout = Duration.ofSeconds(20);
+    /**
+     * Время загрузки тела ответа, медленно отдаваемое тело обрывается
+     */
+    private Duration bodyTimeout = Duration.ofSeconds(30);
+    /**
+     * Максимальный размер страницы после распаковки, загрузка большей страницы завершается ошибкой
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(5);
+    /**
+     * Типы содержимого страниц, остальные ответы не загружаются
+     */
+    private List<String> contentTypes = List.of("text/html", "application/xhtml+xml");
+}
@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lemma-settings")
+public class LemmaSettings {
+    /**
+     * Максимальное кол-во словоформ в кэше словоформа -> лемма
+     */
+    private long cacheSize = 200_000;
+}
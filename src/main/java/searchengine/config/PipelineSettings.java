@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.pipeline")
+public class PipelineSettings {
+    /**
+     * Размер очереди страниц, ожидающих лемматизации
+     */
+    private int queueCapacity = 200;
+    /**
+     * Кол-во потоков лемматизации на сайт
+     */
+    private int lemmatizerThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+}
@@ -0,0 +1,51 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.politeness")
+public class PolitenessSettings {
+    /**
+     * Максимальное кол-во запросов в секунду к одному хосту
+     */
+    private double maxRequestsPerSecond = 10;
+    /**
+     * Минимальное кол-во запросов в секунду, ниже которого скорость не снижается
+     */
+    private double minRequestsPerSecond = 0.5;
+    /**
+     * Прибавка к скорости после каждого успешного ответа (аддитивное увеличение)
+     */
+    private double increaseStep = 0.2;
+    /**
+     * Множитель скорости после ответа 429/5xx или медленного ответа (мультипликативное уменьшение)
+     */
+    private double decreaseFactor = 0.5;
+    /**
+     * Время ответа, после которого хост считается перегруженным
+     */
+    private Duration slowResponse = Duration.ofSeconds(3);
+    /**
+     * Кол-во повторных запросов страницы после ответа 429/503
+     */
+    private int maxRetries = 2;
+    /**
+     * Учитывать Crawl-delay из robots.txt
+     */
+    private boolean respectCrawlDelay = true;
+    /**
+     * Время хранения прочитанного robots.txt, после него файл загружается заново
+     */
+    private Duration robotsTtl = Duration.ofHours(1);
+    /**
+     * Планировщик хоста без запросов дольше этого времени удаляется вместе с накопленной скоростью
+     */
+    private Duration hostIdleTimeout = Duration.ofMinutes(10);
+}
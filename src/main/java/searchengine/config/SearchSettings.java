@@ -0,0 +1,55 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    /**
+     * Максимальный сдвиг от начала списка результатов (параметр offset)
+     */
+    private int maxOffset = 10_000;
+    /**
+     * Максимальное кол-во результатов в одном ответе (параметр limit)
+     */
+    private int maxLimit = 100;
+    /**
+     * Кол-во потоков поиска по сайтам (общее для всех запросов)
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Размер очереди задач поиска по сайтам, при переполнении сайт пропускается
+     */
+    private int queueCapacity = 100;
+    /**
+     * Время ожидания результатов всех сайтов, не успевшие сайты не попадают в ответ
+     */
+    private Duration siteTimeout = Duration.ofSeconds(2);
+    /**
+     * Кол-во потоков построения сниппетов (общее для всех запросов)
+     */
+    private int snippetThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Время ожидания сниппетов порции результатов, не успевшие сниппеты остаются пустыми
+     */
+    private Duration snippetTimeout = Duration.ofSeconds(1);
+    /**
+     * Максимальное кол-во запросов в кэше результатов
+     */
+    private long cacheSize = 1000;
+    /**
+     * Время жизни результата в кэше
+     */
+    private Duration cacheTtl = Duration.ofMinutes(10);
+    /**
+     * Сколько лучших страниц запроса сохраняется в кэше для следующих порций
+     */
+    private int cachedResults = 200;
+}
@@ -0,0 +1,25 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.sitemap")
+public class SitemapSettings {
+    /**
+     * Начинать обход со ссылок из sitemap.xml (из robots.txt или /sitemap.xml)
+     */
+    private boolean enabled = true;
+    /**
+     * Максимальное кол-во ссылок из карт сайта
+     */
+    private int maxUrls = 50_000;
+    /**
+     * Максимальное кол-во загружаемых файлов карт сайта (с вложенными)
+     */
+    private int maxSitemaps = 200;
+}
@@ -0,0 +1,47 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.url-normalizer")
+public class UrlNormalizerSettings {
+    /**
+     * Убирать "www." из имени хоста
+     */
+    private boolean stripWww = true;
+    /**
+     * Сортировать параметры запроса
+     */
+    private boolean sortParams = true;
+    /**
+     * Разрешённые параметры запроса, пустой список - разрешены все, кроме запрещённых.
+     * Имя с '*' на конце - префикс
+     */
+    private List<String> allowedParams = List.of();
+    /**
+     * Удаляемые параметры запроса (метки, идентификаторы сессий)
+     */
+    private List<String> deniedParams = List.of("utm_*", "fbclid", "gclid", "yclid", "_openstat",
+            "from", "ref", "sessionid", "phpsessid", "sid", "jsessionid");
+    /**
+     * Имена индексных файлов, заменяемые на каталог: /news/index.html -> /news/
+     */
+    private List<String> indexFiles = List.of("index.html", "index.htm", "index.php", "default.aspx");
+    /**
+     * Расширения файлов, ссылки на которые не загружаются
+     */
+    private List<String> deniedExtensions = List.of("jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp",
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "zip", "rar", "7z", "gz", "tar",
+            "mp3", "mp4", "avi", "mov", "wmv", "webm", "css", "js", "json", "xml", "rss", "exe", "apk");
+    /**
+     * Учитывать link rel="canonical" страницы
+     */
+    private boolean honorCanonical = true;
+}
@@ -6,11 +6,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import searchengine.dto.Response;
+import searchengine.dto.duplicates.DuplicatesResponse;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.services.duplicates.DuplicateService;
 import searchengine.services.indexing.IndexingService;
 import searchengine.services.search.SearchService;
 import searchengine.services.statistics.StatisticsService;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api")
@@ -19,12 +23,18 @@ public class ApiController {
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
     private final SearchService searchService;
+    private final DuplicateService duplicateService;
 
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/duplicates")
+    public ResponseEntity<DuplicatesResponse> duplicates() {
+        return ResponseEntity.ok(duplicateService.getDuplicates());
+    }
+
     @GetMapping("/startIndexing")
     public ResponseEntity<Response> startIndexing() {
         return ResponseEntity.ok(indexingService.startIndexing());
@@ -44,7 +54,14 @@ public class ApiController {
     public ResponseEntity<Response> search(@RequestParam String query,
                                            @RequestParam(required = false) String site,
                                            @RequestParam int offset,
-                                           @RequestParam(required = false) int limit) {
-        return ResponseEntity.ok(searchService.search(query, site, offset, limit));
+                                           @RequestParam(required = false) int limit,
+                                           @RequestParam(defaultValue = "true") boolean snippets) {
+        return ResponseEntity.ok(searchService.search(query, site, offset, limit, snippets));
+    }
+
+    @GetMapping("/snippets")
+    public ResponseEntity<Response> snippets(@RequestParam String query,
+                                             @RequestParam List<Integer> pageIds) {
+        return ResponseEntity.ok(searchService.snippets(query, pageIds));
     }
 }
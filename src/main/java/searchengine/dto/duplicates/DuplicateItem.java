@@ -0,0 +1,10 @@
+package searchengine.dto.duplicates;
+
+import lombok.Data;
+
+@Data
+public class DuplicateItem {
+    private String path;
+    private String originalPath;
+    private int distance;
+}
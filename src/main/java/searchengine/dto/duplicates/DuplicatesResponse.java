@@ -0,0 +1,12 @@
+package searchengine.dto.duplicates;
+
+import lombok.Data;
+import searchengine.dto.Response;
+
+import java.util.List;
+
+@Data
+public class DuplicatesResponse extends Response {
+    private int total;
+    private List<SiteDuplicatesItem> detailed;
+}
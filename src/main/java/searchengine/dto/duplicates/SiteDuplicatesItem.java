@@ -0,0 +1,14 @@
+package searchengine.dto.duplicates;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SiteDuplicatesItem {
+    private String url;
+    private String name;
+    private int checked;
+    private int collapsed;
+    private List<DuplicateItem> examples;
+}
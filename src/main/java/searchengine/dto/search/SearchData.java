@@ -14,4 +14,8 @@ public class SearchData {
     private String title;
     private String snippet;
     private double relevance;
+    /**
+     * Id страницы для загрузки сниппета через /api/snippets
+     */
+    private int pageId;
 }
@@ -10,5 +10,9 @@ import java.util.List;
 public class SearchResponse extends Response {
     private int count;
     private String error;
+    /**
+     * Часть сайтов не ответила вовремя, результаты неполные
+     */
+    private boolean partial;
     private List<SearchData> data = new ArrayList<>();
 }
@@ -0,0 +1,13 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+import searchengine.dto.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SnippetsResponse extends Response {
+    private String error;
+    private List<SnippetData> data = new ArrayList<>();
+}
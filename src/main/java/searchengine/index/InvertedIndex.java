@@ -0,0 +1,206 @@
+package searchengine.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.repository.IndexRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Инвертированный индекс в памяти: lemmaId -> список страниц с рангами.
+ * Строится из таблицы index_e при старте и поддерживается при индексации,
+ * поэтому пересечение списков и расчёт релевантности не обращаются к БД.
+ */
+@Slf4j
+@Component
+@DependsOn("lemmaDuplicatesMigration")
+@RequiredArgsConstructor
+public class InvertedIndex {
+    private static final int LOAD_BATCH_SIZE = 50_000;
+
+    private final IndexRepository indexRepository;
+
+    private final Map<Integer, PostingList> postingLists = new ConcurrentHashMap<>();
+
+    /**
+     * Загрузка индекса из БД порциями по index_id
+     */
+    @PostConstruct
+    public void load() {
+        long startTime = System.currentTimeMillis();
+        Map<Integer, Loader> loaders = new HashMap<>();
+        int lastIndexId = 0;
+        long count = 0;
+        List<Object[]> rows;
+        do {
+            rows = indexRepository.findPostingsAfter(lastIndexId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                lastIndexId = ((Number) row[0]).intValue();
+                int lemmaId = ((Number) row[1]).intValue();
+                int siteId = ((Number) row[2]).intValue();
+                loaders.computeIfAbsent(lemmaId, k -> new Loader(siteId))
+                        .add(((Number) row[3]).intValue(), ((Number) row[4]).floatValue());
+            }
+            count += rows.size();
+        } while (rows.size() == LOAD_BATCH_SIZE);
+
+        loaders.forEach((lemmaId, loader) -> postingLists.put(lemmaId, loader.build()));
+        log.info("Inverted index loaded: {} lemmas, {} postings, {} ms",
+                postingLists.size(), count, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Список страниц леммы
+     *
+     * @param lemmaId - id леммы
+     * @return снимок списка (пустой, если лемма не найдена)
+     */
+    public PostingList.Postings getPostings(int lemmaId) {
+        PostingList postingList = postingLists.get(lemmaId);
+        return postingList == null ? PostingList.EMPTY : postingList.snapshot();
+    }
+
+    /**
+     * Добавление страницы в список леммы
+     *
+     * @param siteId  - id сайта
+     * @param lemmaId - id леммы
+     * @param pageId  - id страницы
+     * @param rank    - ранг леммы на странице
+     */
+    public void add(int siteId, int lemmaId, int pageId, float rank) {
+        postingLists.computeIfAbsent(lemmaId, k -> new PostingList(siteId)).put(pageId, rank);
+    }
+
+    /**
+     * Удаление страницы из списков указанных лемм
+     *
+     * @param pageId   - id страницы
+     * @param lemmaIds - id лемм страницы
+     */
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+        for (Integer lemmaId : lemmaIds) {
+            PostingList postingList = postingLists.get(lemmaId);
+            if (postingList != null && postingList.remove(pageId) && postingList.size() == 0) {
+                postingLists.remove(lemmaId, postingList);
+            }
+        }
+    }
+
+    /**
+     * Удаление всех лемм сайта
+     *
+     * @param siteId - id сайта
+     */
+    public void removeSite(int siteId) {
+        postingLists.values().removeIf(postingList -> postingList.getSiteId() == siteId);
+        log.info("Inverted index: lemmas of siteId {} removed", siteId);
+    }
+
+    /**
+     * Пересечение списков лемм с суммированием рангов (абсолютная релевантность).
+     * Списки обходятся от самого короткого, позиции в остальных ищутся галопом.
+     *
+     * @param lemmaIds - id лемм запроса
+     * @return найденные страницы и их абсолютная релевантность
+     */
+    public Matches intersect(int[] lemmaIds) {
+        if (lemmaIds.length == 0) {
+            return new Matches(new int[0], new double[0], 0);
+        }
+        PostingList.Postings[] lists = new PostingList.Postings[lemmaIds.length];
+        for (int i = 0; i < lemmaIds.length; i++) {
+            lists[i] = getPostings(lemmaIds[i]);
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+        PostingList.Postings first = lists[0];
+        int[] pageIds = new int[first.size()];
+        double[] scores = new double[first.size()];
+        int count = first.size();
+        for (int i = 0; i < count; i++) {
+            pageIds[i] = first.pageId(i);
+            scores[i] = first.rank(i);
+        }
+
+        for (int l = 1; l < lists.length && count > 0; l++) {
+            PostingList.Postings list = lists[l];
+            int pos = 0;
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                pos = list.advance(pos, pageIds[i]);
+                if (pos >= list.size()) {
+                    break;
+                }
+                if (list.pageId(pos) == pageIds[i]) {
+                    pageIds[kept] = pageIds[i];
+                    scores[kept] = scores[i] + list.rank(pos);
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+        return new Matches(pageIds, scores, count);
+    }
+
+    /**
+     * Результат пересечения: первые size элементов массивов
+     */
+    public static final class Matches {
+        private final int[] pageIds;
+        private final double[] scores;
+        private final int size;
+
+        private Matches(int[] pageIds, double[] scores, int size) {
+            this.pageIds = pageIds;
+            this.scores = scores;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pageId(int i) {
+            return pageIds[i];
+        }
+
+        public double score(int i) {
+            return scores[i];
+        }
+    }
+
+    private static final class Loader {
+        private final int siteId;
+        private int[] pageIds = new int[4];
+        private float[] ranks = new float[4];
+        private int size;
+
+        private Loader(int siteId) {
+            this.siteId = siteId;
+        }
+
+        private void add(int pageId, float rank) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            size++;
+        }
+
+        private PostingList build() {
+            return PostingList.fromUnsorted(siteId, pageIds, ranks, size);
+        }
+    }
+}
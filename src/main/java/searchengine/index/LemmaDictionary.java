@@ -0,0 +1,113 @@
+package searchengine.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.model.Lemma;
+import searchengine.repository.LemmaRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словари лемм по сайтам: лемма -> (lemmaId, frequency).
+ * Загружается из таблицы lemma при старте, обновляется при индексации
+ * и сбрасывается при удалении сайта, поэтому поиск и индексация
+ * не выполняют SELECT по каждой лемме.
+ */
+@Slf4j
+@Component
+@DependsOn("lemmaDuplicatesMigration")
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    private static final int LOAD_BATCH_SIZE = 50_000;
+
+    private final LemmaRepository lemmaRepository;
+
+    private final Map<Integer, LemmaTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Загрузка словарей из БД порциями по lemma_id
+     */
+    @PostConstruct
+    public void load() {
+        long startTime = System.currentTimeMillis();
+        int lastLemmaId = 0;
+        long count = 0;
+        List<Object[]> rows;
+        do {
+            rows = lemmaRepository.findLemmasAfter(lastLemmaId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                lastLemmaId = ((Number) row[0]).intValue();
+                int siteId = ((Number) row[1]).intValue();
+                getTable(siteId).merge((String) row[2], lastLemmaId, ((Number) row[3]).intValue());
+            }
+            count += rows.size();
+        } while (rows.size() == LOAD_BATCH_SIZE);
+        log.info("Lemma dictionary loaded: {} sites, {} lemmas, {} ms",
+                tables.size(), count, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Поиск леммы сайта
+     *
+     * @param siteId - id сайта
+     * @param lemma  - лемма
+     * @return сущность Lemma (не связанная с контекстом JPA)
+     */
+    public Optional<Lemma> find(int siteId, String lemma) {
+        LemmaTable table = tables.get(siteId);
+        if (table == null) {
+            return Optional.empty();
+        }
+        int lemmaId = table.getId(lemma);
+        int frequency = table.getFrequency(lemma);
+        if (lemmaId == 0 || frequency == 0) {
+            return Optional.empty();
+        }
+        Lemma result = new Lemma(siteId, lemma, frequency);
+        result.setLemmaId(lemmaId);
+        return Optional.of(result);
+    }
+
+    /**
+     * Id леммы сайта
+     *
+     * @return lemmaId или 0, если лемма не найдена
+     */
+    public int getLemmaId(int siteId, String lemma) {
+        LemmaTable table = tables.get(siteId);
+        return table == null ? 0 : table.getId(lemma);
+    }
+
+    /**
+     * Изменение частоты леммы, лемма с нулевой частотой удаляется из словаря
+     *
+     * @param siteId  - id сайта
+     * @param lemma   - лемма
+     * @param lemmaId - id леммы (0 - если неизвестен)
+     * @param delta   - приращение частоты
+     */
+    public void merge(int siteId, String lemma, int lemmaId, int delta) {
+        getTable(siteId).merge(lemma, lemmaId, delta);
+    }
+
+    /**
+     * Удаление словаря сайта
+     *
+     * @param siteId - id сайта
+     */
+    public void removeSite(int siteId) {
+        tables.remove(siteId);
+        log.info("Lemma dictionary: siteId {} removed", siteId);
+    }
+
+    private LemmaTable getTable(int siteId) {
+        return tables.computeIfAbsent(siteId, k -> new LemmaTable());
+    }
+}
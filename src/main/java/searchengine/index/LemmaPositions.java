@@ -0,0 +1,154 @@
+package searchengine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Позиции лемм на странице, собранные при индексации: для каждой леммы - порядковые номера слов
+ * и границы слов в тексте. Сниппет строится по позициям без повторной лемматизации страницы.
+ * <p>
+ * Формат (все числа - varint): кол-во лемм, далее для каждой леммы длина и байты UTF-8 леммы,
+ * кол-во позиций, длина блока позиций в байтах и сам блок. Позиция - тройка
+ * (номер слова - номер предыдущего, начало - конец предыдущего, длина слова),
+ * блок позиций ненужной леммы пропускается без разбора.
+ */
+public final class LemmaPositions {
+
+    private LemmaPositions() {
+        throw new IllegalArgumentException("Disallow construct");
+    }
+
+    /**
+     * Накопитель позиций при проходе лемматизатора по тексту
+     */
+    public static final class Builder {
+        private final Map<String, Positions> lemmas = new LinkedHashMap<>();
+        private int wordIndex;
+
+        /**
+         * Очередное слово текста с леммой
+         *
+         * @param start - начало слова
+         * @param end   - конец слова
+         * @param lemma - лемма
+         */
+        public void add(int start, int end, String lemma) {
+            lemmas.computeIfAbsent(lemma, k -> new Positions()).add(wordIndex++, start, end);
+        }
+
+        /**
+         * Лемма и кол-во её упоминаний
+         */
+        public Map<String, Integer> getCounts() {
+            Map<String, Integer> counts = new HashMap<>(lemmas.size() * 2);
+            lemmas.forEach((lemma, positions) -> counts.put(lemma, positions.size / 3));
+            return counts;
+        }
+
+        public byte[] encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(lemmas.size() * 16);
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            writeVarInt(out, lemmas.size());
+            lemmas.forEach((lemma, positions) -> {
+                byte[] bytes = lemma.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+                writeVarInt(out, positions.size / 3);
+
+                block.reset();
+                int prevWord = 0;
+                int prevEnd = 0;
+                for (int i = 0; i < positions.size; i += 3) {
+                    writeVarInt(block, positions.values[i] - prevWord);
+                    writeVarInt(block, positions.values[i + 1] - prevEnd);
+                    writeVarInt(block, positions.values[i + 2] - positions.values[i + 1]);
+                    prevWord = positions.values[i];
+                    prevEnd = positions.values[i + 2];
+                }
+                writeVarInt(out, block.size());
+                out.write(block.toByteArray(), 0, block.size());
+            });
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Позиции указанных лемм
+     *
+     * @param data   - закодированные позиции страницы
+     * @param lemmas - нужные леммы
+     * @return лемма -> тройки (номер слова, начало, конец) подряд в одном массиве;
+     * леммы, которых нет на странице, отсутствуют
+     */
+    public static Map<String, int[]> decode(byte[] data, Collection<String> lemmas) {
+        Map<String, int[]> result = new HashMap<>();
+        Set<String> wanted = new HashSet<>(lemmas);
+        int[] pos = {0};
+        int lemmaCount = readVarInt(data, pos);
+        for (int l = 0; l < lemmaCount && result.size() < wanted.size(); l++) {
+            int length = readVarInt(data, pos);
+            String lemma = new String(data, pos[0], length, StandardCharsets.UTF_8);
+            pos[0] += length;
+            int count = readVarInt(data, pos);
+            int blockSize = readVarInt(data, pos);
+            if (!wanted.contains(lemma)) {
+                pos[0] += blockSize;
+                continue;
+            }
+            int[] values = new int[count * 3];
+            int word = 0;
+            int end = 0;
+            for (int i = 0; i < count; i++) {
+                word += readVarInt(data, pos);
+                int start = end + readVarInt(data, pos);
+                end = start + readVarInt(data, pos);
+                values[i * 3] = word;
+                values[i * 3 + 1] = start;
+                values[i * 3 + 2] = end;
+            }
+            result.put(lemma, values);
+        }
+        return result;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static final class Positions {
+        private int[] values = new int[6];
+        private int size;
+
+        private void add(int word, int start, int end) {
+            if (size + 3 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = word;
+            values[size++] = start;
+            values[size++] = end;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package searchengine.index;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Словарь лемм одного сайта: лемма -> (lemmaId, frequency).
+ * Хэш-таблица с открытой адресацией на параллельных массивах,
+ * без объектов-обёрток на каждую запись.
+ */
+public class LemmaTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] frequencies = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Id леммы
+     *
+     * @param lemma - лемма
+     * @return lemmaId или 0, если лемма не найдена
+     */
+    public int getId(String lemma) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(keys, lemma);
+            return keys[slot] == null ? 0 : ids[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Частота леммы
+     *
+     * @param lemma - лемма
+     * @return frequency или 0, если лемма не найдена
+     */
+    public int getFrequency(String lemma) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(keys, lemma);
+            return keys[slot] == null ? 0 : frequencies[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет лемму или изменяет её частоту на delta.
+     * Лемма с частотой <= 0 удаляется.
+     *
+     * @param lemma   - лемма
+     * @param lemmaId - id леммы (0 - оставить прежний)
+     * @param delta   - приращение частоты
+     */
+    public void merge(String lemma, int lemmaId, int delta) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keys, lemma);
+            if (keys[slot] == null) {
+                if (delta <= 0 || lemmaId == 0) {
+                    return;
+                }
+                keys[slot] = lemma;
+                ids[slot] = lemmaId;
+                frequencies[slot] = delta;
+                if (++size > keys.length * LOAD_FACTOR) {
+                    resize();
+                }
+                return;
+            }
+            if (lemmaId != 0) {
+                ids[slot] = lemmaId;
+            }
+            frequencies[slot] += delta;
+            if (frequencies[slot] <= 0) {
+                removeSlot(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int findSlot(String[] keys, String lemma) {
+        int mask = keys.length - 1;
+        int slot = spread(lemma.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(lemma)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldIds = ids;
+        int[] oldFrequencies = frequencies;
+        keys = new String[oldKeys.length * 2];
+        ids = new int[keys.length];
+        frequencies = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+                frequencies[slot] = oldFrequencies[i];
+            }
+        }
+    }
+
+    /**
+     * Удаление со сдвигом следующих элементов цепочки, без "надгробий"
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        keys[slot] = null;
+        size--;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            String key = keys[next];
+            int id = ids[next];
+            int frequency = frequencies[next];
+            keys[next] = null;
+            int target = findSlot(keys, key);
+            keys[target] = key;
+            ids[target] = id;
+            frequencies[target] = frequency;
+            next = (next + 1) & mask;
+        }
+    }
+}
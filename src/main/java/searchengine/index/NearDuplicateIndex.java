@@ -0,0 +1,169 @@
+package searchengine.index;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отпечатки {@link SimHash} страниц одного сайта с поиском почти одинаковых.
+ * Отпечаток делится на maxDistance + 1 полос: у отпечатков, отличающихся не более чем
+ * в maxDistance битах, хотя бы одна полоса совпадает, поэтому сравниваются
+ * только отпечатки с общей полосой, а не все страницы сайта.
+ */
+public class NearDuplicateIndex {
+    private final int maxDistance;
+    private final int minWords;
+    private final int maxExamples;
+    private final int[] bandShifts;
+    private final long[] bandMasks;
+    private final Map<Long, List<Integer>> bands = new HashMap<>();
+    private final List<Long> fingerprints = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+    private final List<Duplicate> examples = new ArrayList<>();
+    private int checkedPages;
+    private int collapsedPages;
+
+    /**
+     * @param maxDistance - наибольшее расстояние Хэмминга между отпечатками дубликатов
+     * @param minWords    - минимальное кол-во слов на проверяемой странице
+     * @param maxExamples - сколько найденных дубликатов сохранять для отчёта
+     */
+    public NearDuplicateIndex(int maxDistance, int minWords, int maxExamples) {
+        this.maxDistance = maxDistance;
+        this.minWords = minWords;
+        this.maxExamples = maxExamples;
+        int bandCount = Math.min(maxDistance + 1, 64);
+        this.bandShifts = new int[bandCount];
+        this.bandMasks = new long[bandCount];
+        int shift = 0;
+        for (int band = 0; band < bandCount; band++) {
+            int width = 64 / bandCount + (band < 64 % bandCount ? 1 : 0);
+            bandShifts[band] = shift;
+            bandMasks[band] = width == 64 ? -1L : (1L << width) - 1;
+            shift += width;
+        }
+    }
+
+    /**
+     * Отпечаток текста страницы
+     *
+     * @return отпечаток или {@link SimHash#NONE} для короткой страницы
+     */
+    public long fingerprint(CharSequence text) {
+        return SimHash.fingerprint(text, minWords);
+    }
+
+    /**
+     * Проверка страницы: если почти такая же страница уже есть - страница считается дубликатом,
+     * иначе её отпечаток добавляется в индекс
+     *
+     * @param fingerprint - отпечаток страницы
+     * @param path        - путь страницы
+     * @return путь страницы-оригинала или null, если дубликатов нет
+     */
+    public synchronized String findOrAdd(long fingerprint, String path) {
+        checkedPages++;
+        int original = findSimilar(fingerprint);
+        if (original < 0) {
+            add(fingerprint, path);
+            return null;
+        }
+        collapsedPages++;
+        String originalPath = paths.get(original);
+        if (examples.size() < maxExamples) {
+            examples.add(new Duplicate(path, originalPath,
+                    SimHash.distance(fingerprint, fingerprints.get(original))));
+        }
+        return originalPath;
+    }
+
+    /**
+     * Добавление отпечатка сохранённой ранее страницы без проверки
+     */
+    public synchronized void add(long fingerprint, String path) {
+        int id = fingerprints.size();
+        fingerprints.add(fingerprint);
+        paths.add(path);
+        for (int band = 0; band < bandShifts.length; band++) {
+            bands.computeIfAbsent(bandKey(band, fingerprint), key -> new ArrayList<>(1)).add(id);
+        }
+    }
+
+    public synchronized int getCheckedPages() {
+        return checkedPages;
+    }
+
+    public synchronized int getCollapsedPages() {
+        return collapsedPages;
+    }
+
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    public synchronized List<Duplicate> getExamples() {
+        return new ArrayList<>(examples);
+    }
+
+    /**
+     * Счётчики и примеры дубликатов без отпечатков и путей страниц
+     */
+    public synchronized Report getReport() {
+        return new Report(checkedPages, collapsedPages, List.copyOf(examples));
+    }
+
+    private int findSimilar(long fingerprint) {
+        for (int band = 0; band < bandShifts.length; band++) {
+            List<Integer> candidates = bands.get(bandKey(band, fingerprint));
+            if (candidates == null) {
+                continue;
+            }
+            for (int candidate : candidates) {
+                if (SimHash.distance(fingerprint, fingerprints.get(candidate)) <= maxDistance) {
+                    return candidate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private long bandKey(int band, long fingerprint) {
+        long value = (fingerprint >>> bandShifts[band]) & bandMasks[band];
+        return value * 64 + band;
+    }
+
+    /**
+     * Итог проверки страниц сайта для отчёта
+     */
+    @Getter
+    public static class Report {
+        private final int checkedPages;
+        private final int collapsedPages;
+        private final List<Duplicate> examples;
+
+        public Report(int checkedPages, int collapsedPages, List<Duplicate> examples) {
+            this.checkedPages = checkedPages;
+            this.collapsedPages = collapsedPages;
+            this.examples = examples;
+        }
+    }
+
+    /**
+     * Найденный дубликат
+     */
+    @Getter
+    public static class Duplicate {
+        private final String path;
+        private final String originalPath;
+        private final int distance;
+
+        public Duplicate(String path, String originalPath, int distance) {
+            this.path = path;
+            this.originalPath = originalPath;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package searchengine.index;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Список страниц одной леммы: отсортированный массив pageId и параллельный массив rank.
+ * Читатели получают неизменяемый снимок {@link Postings} без блокировок,
+ * запись (добавление / удаление страниц) синхронизирована.
+ */
+public class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+    static final Postings EMPTY = new Postings(new int[0], new float[0], 0);
+
+    @Getter
+    private final int siteId;
+    private volatile Postings postings;
+
+    public PostingList(int siteId) {
+        this.siteId = siteId;
+        this.postings = new Postings(new int[INITIAL_CAPACITY], new float[INITIAL_CAPACITY], 0);
+    }
+
+    private PostingList(int siteId, Postings postings) {
+        this.siteId = siteId;
+        this.postings = postings;
+    }
+
+    /**
+     * Создаёт список из неотсортированных пар (pageId, rank), используется при загрузке из БД
+     *
+     * @param siteId  - id сайта
+     * @param pageIds - id страниц
+     * @param ranks   - ранги
+     * @param size    - кол-во заполненных элементов
+     * @return список
+     */
+    public static PostingList fromUnsorted(int siteId, int[] pageIds, float[] ranks, int size) {
+        long[] pairs = new long[size];
+        for (int i = 0; i < size; i++) {
+            pairs[i] = ((long) pageIds[i] << 32) | (Float.floatToRawIntBits(ranks[i]) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(pairs);
+
+        int[] sortedPageIds = new int[Math.max(size, INITIAL_CAPACITY)];
+        float[] sortedRanks = new float[sortedPageIds.length];
+        int count = 0;
+        for (long pair : pairs) {
+            int pageId = (int) (pair >>> 32);
+            if (count > 0 && sortedPageIds[count - 1] == pageId) {
+                count--;
+            }
+            sortedPageIds[count] = pageId;
+            sortedRanks[count] = Float.intBitsToFloat((int) pair);
+            count++;
+        }
+        return new PostingList(siteId, new Postings(sortedPageIds, sortedRanks, count));
+    }
+
+    /**
+     * Текущий снимок списка
+     */
+    public Postings snapshot() {
+        return postings;
+    }
+
+    public int size() {
+        return postings.size;
+    }
+
+    /**
+     * Добавляет страницу или обновляет её rank.
+     * Страницы обычно приходят по возрастанию pageId, поэтому добавление в конец
+     * выполняется на месте: читатели не видят элементы за пределами своего size.
+     */
+    public synchronized void put(int pageId, float rank) {
+        Postings current = postings;
+        int size = current.size;
+        if (size == 0 || current.pageIds[size - 1] < pageId) {
+            int[] pageIds = current.pageIds;
+            float[] ranks = current.ranks;
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            postings = new Postings(pageIds, ranks, size + 1);
+            return;
+        }
+
+        int pos = Arrays.binarySearch(current.pageIds, 0, size, pageId);
+        int[] pageIds;
+        float[] ranks;
+        if (pos >= 0) {
+            pageIds = Arrays.copyOf(current.pageIds, current.pageIds.length);
+            ranks = Arrays.copyOf(current.ranks, current.ranks.length);
+            ranks[pos] = rank;
+            postings = new Postings(pageIds, ranks, size);
+            return;
+        }
+        int insert = -pos - 1;
+        pageIds = new int[size + 1 + (size >> 1)];
+        ranks = new float[pageIds.length];
+        System.arraycopy(current.pageIds, 0, pageIds, 0, insert);
+        System.arraycopy(current.ranks, 0, ranks, 0, insert);
+        pageIds[insert] = pageId;
+        ranks[insert] = rank;
+        System.arraycopy(current.pageIds, insert, pageIds, insert + 1, size - insert);
+        System.arraycopy(current.ranks, insert, ranks, insert + 1, size - insert);
+        postings = new Postings(pageIds, ranks, size + 1);
+    }
+
+    /**
+     * Удаляет страницу из списка
+     *
+     * @return true если страница была в списке
+     */
+    public synchronized boolean remove(int pageId) {
+        Postings current = postings;
+        int size = current.size;
+        int pos = Arrays.binarySearch(current.pageIds, 0, size, pageId);
+        if (pos < 0) {
+            return false;
+        }
+        int[] pageIds = new int[Math.max(size, INITIAL_CAPACITY)];
+        float[] ranks = new float[pageIds.length];
+        System.arraycopy(current.pageIds, 0, pageIds, 0, pos);
+        System.arraycopy(current.ranks, 0, ranks, 0, pos);
+        System.arraycopy(current.pageIds, pos + 1, pageIds, pos, size - pos - 1);
+        System.arraycopy(current.ranks, pos + 1, ranks, pos, size - pos - 1);
+        postings = new Postings(pageIds, ranks, size - 1);
+        return true;
+    }
+
+    /**
+     * Неизменяемый снимок списка. Элементы с индексом >= size не принадлежат снимку.
+     */
+    public static final class Postings {
+        private final int[] pageIds;
+        private final float[] ranks;
+        private final int size;
+
+        private Postings(int[] pageIds, float[] ranks, int size) {
+            this.pageIds = pageIds;
+            this.ranks = ranks;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pageId(int i) {
+            return pageIds[i];
+        }
+
+        public float rank(int i) {
+            return ranks[i];
+        }
+
+        /**
+         * Галопирующий поиск: первая позиция >= from, где pageId >= target
+         *
+         * @param from   - позиция начала поиска
+         * @param target - искомый pageId
+         * @return позиция или size, если таких нет
+         */
+        public int advance(int from, int target) {
+            if (from >= size || pageIds[from] >= target) {
+                return from;
+            }
+            int low = from;
+            int step = 1;
+            int high = from + step;
+            while (high < size && pageIds[high] < target) {
+                low = high;
+                step <<= 1;
+                high = from + step;
+            }
+            high = Math.min(high, size);
+            int pos = Arrays.binarySearch(pageIds, low + 1, high, target);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package searchengine.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.model.Lemma;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш результатов поиска: ключ - отсортированные леммы запроса и сайт,
+ * значение - ранжированный список страниц в примитивных массивах.
+ * Следующие порции того же запроса (offset 20, 40, ...) берутся из списка без повторного поиска.
+ * Записи сайта удаляются при изменении его индекса ({@link #invalidateSite(int)}),
+ * результат поиска, начатого до изменения, в кэш не попадает.
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+    private final Cache<String, Entry> cache;
+    private final AtomicLong version = new AtomicLong();
+
+    public SearchResultCache(SearchSettings settings) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(settings.getCacheSize())
+                .expireAfterWrite(settings.getCacheTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Ключ кэша
+     *
+     * @param sortedLemmas - отсортированные леммы запроса
+     * @param site         - сайт (null - все сайты)
+     */
+    public static String key(List<String> sortedLemmas, String site) {
+        return (site == null ? "" : site) + '|' + String.join(" ", sortedLemmas);
+    }
+
+    /**
+     * Версия индекса, читается перед поиском и передаётся в {@link #put(String, Entry, long)}
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public Entry get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Сохранение результата, если индекс не менялся с начала поиска.
+     * {@link #invalidateSite(int)} увеличивает версию до очистки кэша, поэтому версия проверяется
+     * и после записи: если сайт изменился между проверкой и записью, запись удаляется.
+     *
+     * @param key     - ключ
+     * @param entry   - результат
+     * @param version - версия индекса на начало поиска
+     */
+    public void put(String key, Entry entry, long version) {
+        if (this.version.get() != version) {
+            return;
+        }
+        cache.put(key, entry);
+        if (this.version.get() != version) {
+            cache.asMap().remove(key, entry);
+        }
+    }
+
+    /**
+     * Удаление результатов, в поиске которых участвовал сайт
+     *
+     * @param siteId - id сайта с изменившимся индексом
+     */
+    public void invalidateSite(int siteId) {
+        version.incrementAndGet();
+        cache.asMap().values().removeIf(entry -> entry.coversSite(siteId));
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Ранжированные страницы запроса: первые size из count найденных
+     */
+    @Getter
+    public static final class Entry {
+        private final int[] scopeSiteIds;
+        private final List<Lemma> lemmas;
+        private final int[] siteIds;
+        private final int[] pageIds;
+        private final float[] relevances;
+        private final int count;
+
+        /**
+         * @param scopeSiteIds - сайты, по которым выполнялся поиск (null - все сайты)
+         * @param lemmas       - найденные леммы запроса (для сниппетов)
+         * @param siteIds      - сайты страниц по убыванию релевантности
+         * @param pageIds      - страницы
+         * @param relevances   - относительная релевантность
+         * @param count        - общее кол-во найденных страниц
+         */
+        public Entry(int[] scopeSiteIds, List<Lemma> lemmas, int[] siteIds, int[] pageIds, float[] relevances,
+                     int count) {
+            this.scopeSiteIds = scopeSiteIds;
+            this.lemmas = lemmas;
+            this.siteIds = siteIds;
+            this.pageIds = pageIds;
+            this.relevances = relevances;
+            this.count = count;
+        }
+
+        public int size() {
+            return pageIds.length;
+        }
+
+        /**
+         * В записи есть все страницы порции offset..offset + limit
+         */
+        public boolean covers(int offset, int limit) {
+            return size() == count || offset + limit <= size();
+        }
+
+        private boolean coversSite(int siteId) {
+            if (scopeSiteIds == null) {
+                return true;
+            }
+            for (int scopeSiteId : scopeSiteIds) {
+                if (scopeSiteId == siteId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
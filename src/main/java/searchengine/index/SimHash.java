@@ -0,0 +1,82 @@
+package searchengine.index;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import searchengine.lemma.WordTokenizer;
+
+/**
+ * 64-битный SimHash текста по шинглам из трёх слов. У почти одинаковых текстов
+ * (версия для печати, та же статья с другим меню) отпечатки отличаются в нескольких битах,
+ * поэтому близость страниц определяется расстоянием Хэмминга между отпечатками.
+ */
+public final class SimHash {
+    /**
+     * Отпечаток не вычислен (текст слишком короткий)
+     */
+    public static final long NONE = 0L;
+    private static final int BITS = 64;
+    private static final int SHINGLE_SIZE = 3;
+    private static final HashFunction WORD_HASH = Hashing.murmur3_128();
+
+    private SimHash() {
+        throw new IllegalArgumentException("Disallow construct");
+    }
+
+    /**
+     * Отпечаток текста
+     *
+     * @param text     - текст страницы
+     * @param minWords - минимальное кол-во слов, у более коротких текстов отпечаток не вычисляется
+     * @return отпечаток или {@link #NONE}
+     */
+    public static long fingerprint(CharSequence text, int minWords) {
+        int[] weights = new int[BITS];
+        long[] window = new long[SHINGLE_SIZE];
+        int[] words = {0};
+        WordTokenizer.tokenize(text, (start, end, cyrillic) -> {
+            long wordHash = WORD_HASH.hashUnencodedChars(WordTokenizer.toLowerCase(text, start, end)).asLong();
+            window[words[0] % SHINGLE_SIZE] = wordHash;
+            words[0]++;
+            if (words[0] >= SHINGLE_SIZE) {
+                long shingle = 0;
+                for (int i = words[0] - SHINGLE_SIZE; i < words[0]; i++) {
+                    shingle = shingle * 31 + window[i % SHINGLE_SIZE];
+                }
+                addFeature(weights, mix(shingle));
+            }
+        });
+        if (words[0] < Math.max(minWords, SHINGLE_SIZE)) {
+            return NONE;
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint == NONE ? 1L : fingerprint;
+    }
+
+    /**
+     * Расстояние Хэмминга между отпечатками
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static void addFeature(int[] weights, long hash) {
+        for (int bit = 0; bit < BITS; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) != 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * Перемешивание битов (финализатор SplitMix64)
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
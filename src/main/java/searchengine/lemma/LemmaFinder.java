@@ -1,37 +1,83 @@
 package searchengine.lemma;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.stereotype.Component;
+import searchengine.config.LemmaSettings;
 
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * Лемматизатор. Словари морфологии загружаются один раз при старте приложения,
+ * экземпляр используется всеми потоками.
+ * Результаты нормализации словоформ (в том числе "служебная часть речи / нет леммы")
+ * хранятся в ограниченном LRU-кэше размером {@link LemmaSettings#getCacheSize()}.
+ */
+@Slf4j
+@Component
 public class LemmaFinder {
 
     private final LuceneMorphology morphologyRus;
     private final LuceneMorphology morphologyEng;
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ", "CONJ",
         "INT", "PREP", "ARTICLE", "PART"};
+    private static final String NO_LEMMA = "";
+
+    private final LoadingCache<String, String> normalWordCache;
+
+    public LemmaFinder(LemmaSettings lemmaSettings) throws IOException {
+        long startTime = System.currentTimeMillis();
+        this.morphologyRus = new RussianLuceneMorphology();
+        this.morphologyEng = new EnglishLuceneMorphology();
+        this.normalWordCache = CacheBuilder.newBuilder()
+            .maximumSize(lemmaSettings.getCacheSize())
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .recordStats()
+            .build(CacheLoader.from(this::findNormalWord));
+        log.info("Morphology dictionaries loaded: {} ms", System.currentTimeMillis() - startTime);
+    }
 
-    public static LemmaFinder getInstance() {
-        try {
-            LuceneMorphology morphologyRus = new RussianLuceneMorphology();
-            LuceneMorphology morphologyEng = new EnglishLuceneMorphology();
-            return new LemmaFinder(morphologyRus, morphologyEng);
-        } catch (IOException e) {//
-        }
-        return null;
+    /**
+     * Статистика кэша словоформ (hit rate, кол-во вытеснений и т.д.)
+     */
+    public CacheStats getCacheStats() {
+        return normalWordCache.stats();
     }
 
-    private LemmaFinder(LuceneMorphology luceneMorphologyRus,
-        LuceneMorphology luceneMorphologyEng) {
-        this.morphologyRus = luceneMorphologyRus;
-        this.morphologyEng = luceneMorphologyEng;
+    /**
+     * Получатель лемм текста
+     */
+    @FunctionalInterface
+    public interface LemmaConsumer {
+        /**
+         * @param start - позиция первого символа слова в тексте
+         * @param end   - позиция за последним символом слова
+         * @param lemma - лемма слова
+         */
+        void accept(int start, int end, String lemma);
     }
 
-    private LemmaFinder() {
-        throw new IllegalArgumentException("Disallow construct");
+    /**
+     * Метод проходит по словам текста за один проход и передаёт леммы вместе с позициями слов.
+     * Служебные части речи и слова без леммы пропускаются.
+     *
+     * @param text     текст из которого будут выбираться леммы
+     * @param consumer получатель лемм
+     */
+    public void forEachLemma(CharSequence text, LemmaConsumer consumer) {
+        WordTokenizer.tokenize(text, (start, end, cyrillic) -> {
+            String normalWord = getNormalWord(WordTokenizer.toLowerCase(text, start, end));
+            if (normalWord != null) {
+                consumer.accept(start, end, normalWord);
+            }
+        });
     }
 
     /**
@@ -41,53 +87,34 @@ public class LemmaFinder {
      * @return ключ является леммой, а значение количеством найденных лемм
      */
     public Map<String, Integer> collectLemmas(String text) {
-        String[] words = splitWords(text, false);
-
         HashMap<String, Integer> lemmas = new HashMap<>();
-        for (String word : words) {
-            String normalWord = getNormalWord(word);
-            if (normalWord == null) {
-                continue;
-            }
-            lemmas.put(normalWord, lemmas.getOrDefault(normalWord, 0) + 1);
-        }
+        forEachLemma(text, (start, end, normalWord) -> lemmas.merge(normalWord, 1, Integer::sum));
         return lemmas;
     }
 
     public Map<LemmaItem, Integer> collectLemmasMap(String text) {
-        String[] words = splitWords(text, false);
-
         HashMap<LemmaItem, Integer> lemmas = new HashMap<>();
-        for (String word : words) {
-            String normalWord = getNormalWord(word);
-            if (normalWord == null) {
-                continue;
-            }
-            lemmas.put(new LemmaItem(normalWord, word),
-                lemmas.getOrDefault(new LemmaItem(normalWord, word), 0) + 1);
-        }
+        forEachLemma(text, (start, end, normalWord) -> lemmas.merge(
+            new LemmaItem(normalWord, WordTokenizer.toLowerCase(text, start, end)), 1, Integer::sum));
         return lemmas;
     }
 
     /**
-     * Метод разделяет текст на слова, находит все леммы и считает их количество.
+     * Метод разделяет текст на слова и находит леммы с порядковыми номерами слов.
      *
      * @param text текст из которого будут выбираться леммы
-     * @return ключ является леммой, а значение количеством найденных лемм
+     * @return ключ является номером слова (с 1), а значение леммой
      */
     public Map<Integer, String> collectLemmasList(String text) {
-        String[] words = splitWords(text, true);
-
         HashMap<Integer, String> lemmas = new HashMap<>();
-        int i = 0;
-        for (String word : words) {
-            i++;
-            String normalWord = getNormalWord(word);
-            if (normalWord == null) {
-                continue;
+        int[] i = {0};
+        WordTokenizer.tokenize(text, (start, end, cyrillic) -> {
+            i[0]++;
+            String normalWord = getNormalWord(WordTokenizer.toLowerCase(text, start, end));
+            if (normalWord != null) {
+                lemmas.put(i[0], normalWord);
             }
-            lemmas.put(i, normalWord);
-        }
+        });
         return lemmas;
     }
 
@@ -98,16 +125,8 @@ public class LemmaFinder {
      * @return лист лемм
      */
     public List<String> getLemmaList(String text) {
-        String[] words = splitWords(text, true);
-
         List<String> lemmas = new ArrayList<>();
-        for (String word : words) {
-            String normalWord = getNormalWord(word);
-            if (normalWord == null) {
-                continue;
-            }
-            lemmas.add(normalWord);
-        }
+        forEachLemma(text, (start, end, normalWord) -> lemmas.add(normalWord));
         return lemmas;
     }
 
@@ -122,12 +141,17 @@ public class LemmaFinder {
     }
 
     private String getNormalWord(String word) {
-        LuceneMorphology luceneMorphology;
         if (word.isBlank()) {
             return null;
         }
+        String normalWord = normalWordCache.getUnchecked(word.toLowerCase(Locale.ROOT));
+        return normalWord.equals(NO_LEMMA) ? null : normalWord;
+    }
+
+    private String findNormalWord(String word) {
+        LuceneMorphology luceneMorphology;
 
-        if (isRussian(word)) {
+        if (WordTokenizer.isCyrillic(word)) {
             luceneMorphology = morphologyRus;
         } else {
             luceneMorphology = morphologyEng;
@@ -135,41 +159,19 @@ public class LemmaFinder {
         try {
             List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
             if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                return null;
+                return NO_LEMMA;
             }
         } catch (Exception e) {
-            return null;
+            return NO_LEMMA;
         }
 
         List<String> normalForms = luceneMorphology.getNormalForms(word);
         if (normalForms.isEmpty()) {
-            return null;
+            return NO_LEMMA;
         }
         return normalForms.get(0);
     }
 
-    private String[] splitWords(String text, boolean saveOriginal) {
-        String[] split;
-        if (saveOriginal) {
-            split = text.toLowerCase(Locale.ROOT)
-                .trim()
-                .split("\\s+");
-
-        } else {
-            split = text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-яa-z\\s])", " ")
-                .trim()
-                .split("\\s+");
-        }
-        return split;
-    }
-
-    private static boolean isRussian(String word) {
-        return word.chars()
-            .mapToObj(Character.UnicodeBlock::of)
-            .anyMatch(Character.UnicodeBlock.CYRILLIC::equals);
-    }
-
     private boolean hasParticleProperty(String wordBase) {
         for (String property : particlesNames) {
             if (wordBase.toUpperCase().contains(property)) {
@@ -0,0 +1,88 @@
+package searchengine.lemma;
+
+/**
+ * Разбиение текста на слова за один проход без промежуточных строк.
+ * Словом считается непрерывная последовательность букв a-z / а-я (в любом регистре),
+ * все остальные символы - разделители.
+ */
+public final class WordTokenizer {
+
+    private WordTokenizer() {
+        throw new IllegalArgumentException("Disallow construct");
+    }
+
+    /**
+     * Получатель границ слов
+     */
+    @FunctionalInterface
+    public interface TokenConsumer {
+        /**
+         * @param start    - позиция первого символа слова в тексте
+         * @param end      - позиция за последним символом слова
+         * @param cyrillic - слово содержит кириллицу
+         */
+        void accept(int start, int end, boolean cyrillic);
+    }
+
+    /**
+     * Проход по словам текста
+     *
+     * @param text     - текст
+     * @param consumer - получатель границ слов
+     */
+    public static void tokenize(CharSequence text, TokenConsumer consumer) {
+        int length = text.length();
+        int start = -1;
+        boolean cyrillic = false;
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            boolean isLatin = c >= 'a' && c <= 'z';
+            boolean isCyrillic = c >= 'а' && c <= 'я';
+            if (isLatin || isCyrillic) {
+                if (start < 0) {
+                    start = i;
+                    cyrillic = false;
+                }
+                cyrillic |= isCyrillic;
+            } else if (start >= 0) {
+                consumer.accept(start, i, cyrillic);
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            consumer.accept(start, length, cyrillic);
+        }
+    }
+
+    /**
+     * Слово в нижнем регистре
+     *
+     * @param text  - текст
+     * @param start - начало слова
+     * @param end   - конец слова
+     * @return слово
+     */
+    public static String toLowerCase(CharSequence text, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = Character.toLowerCase(text.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Признак кириллицы в слове
+     *
+     * @param word - слово
+     * @return true если есть хотя бы одна буква а-я
+     */
+    public static boolean isCyrillic(CharSequence word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            if (c >= 'а' && c <= 'я') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
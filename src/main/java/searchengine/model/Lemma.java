@@ -2,6 +2,7 @@ package searchengine.model;
 
 import lombok.*;
 import org.hibernate.annotations.SQLInsert;
+import searchengine.repository.LemmaDuplicatesMigration;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -13,7 +14,9 @@ import java.util.Objects;
 @RequiredArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "lemma", schema = "search_engine")
+@Table(name = "lemma", schema = "search_engine",
+        uniqueConstraints = @UniqueConstraint(name = LemmaDuplicatesMigration.UNIQUE_KEY_NAME,
+                columnNames = {"site_id", "lemma"}))
 @SQLInsert(sql = "insert into search_engine.lemma(frequency, lemma, site_id) values (?, ?, ?) on duplicate key update frequency = lemma.frequency + 1")
 public class Lemma {
     @Id
@@ -40,6 +40,27 @@ public class Page {                            // implements Serializable
     @Column(name = "title", length = 255)
     private String title;
 
+    /**
+     * Заголовки ответа для условных запросов при повторной индексации
+     */
+    @Column(name = "etag", length = 255)
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    /**
+     * Хэш текста страницы, по нему определяется, изменилась ли страница
+     */
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    /**
+     * SimHash текста страницы для поиска почти одинаковых страниц
+     */
+    @Column(name = "simhash")
+    private Long simhash;
+
     @ManyToOne
     @JoinColumn(name = "site_id", insertable = false, updatable = false)   //
     private SiteE siteEBySiteId;
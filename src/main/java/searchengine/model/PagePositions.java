@@ -0,0 +1,36 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Позиции лемм страницы в формате {@link searchengine.index.LemmaPositions}.
+ * Хранятся отдельно от страницы, чтобы не загружаться вместе с ней.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "page_positions", schema = "search_engine", indexes = @Index(columnList = "site_id"))
+public class PagePositions {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(name = "site_id")
+    private int siteId;
+
+    /**
+     * Хэш текста страницы, по которому записаны позиции. Если текст страницы уже обновлён,
+     * а новые позиции ещё не записаны, хэши не совпадают и позиции не используются
+     */
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    @Lob
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
+}
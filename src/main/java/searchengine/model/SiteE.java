@@ -29,6 +29,13 @@ public class SiteE {
     @Column(name = "status_time")
     private Timestamp statusTime;
 
+    /**
+     * Время начала последнего завершённого полного обхода сайта, с ним сравнивается lastmod карт сайта.
+     * Не меняется при индексации отдельной страницы и при смене статуса
+     */
+    @Column(name = "last_crawl_time")
+    private Timestamp lastCrawlTime;
+
     @Basic
     @Column(name = "last_error", columnDefinition = "TEXT")
     private String lastError;
@@ -0,0 +1,84 @@
+package searchengine.parsing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.DuplicateSettings;
+import searchengine.index.NearDuplicateIndex;
+import searchengine.repository.PageRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поиск почти одинаковых страниц (версии для печати, страницы с параметрами, списки по тегам)
+ * при индексации. На время обхода для сайта создаётся {@link NearDuplicateIndex} отпечатков его страниц,
+ * после обхода индекс удаляется и для отчёта о найденных дубликатах остаются только счётчики и примеры.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DuplicateDetector {
+    private final DuplicateSettings settings;
+    private final PageRepository pageRepository;
+    private final Map<Integer, NearDuplicateIndex> activeSites = new ConcurrentHashMap<>();
+    private final Map<Integer, NearDuplicateIndex.Report> reports = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Новый индекс отпечатков сайта перед обходом
+     *
+     * @param siteId      - id сайта
+     * @param isContinued - сайт не удалялся перед обходом, индекс заполняется отпечатками сохранённых страниц
+     * @return индекс отпечатков или null, если поиск дубликатов выключен
+     */
+    public NearDuplicateIndex open(int siteId, boolean isContinued) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        NearDuplicateIndex index = new NearDuplicateIndex(settings.getMaxDistance(), settings.getMinWords(),
+                settings.getReportExamples());
+        if (isContinued) {
+            for (Object[] row : pageRepository.findSimhashesBySiteId(siteId)) {
+                index.add((Long) row[1], (String) row[0]);
+            }
+            log.info("siteId: {} loaded page fingerprints: {}", siteId, index.size());
+        }
+        activeSites.put(siteId, index);
+        reports.remove(siteId);
+        return index;
+    }
+
+    /**
+     * Завершение обхода: индекс отпечатков удаляется, сохраняется отчёт
+     *
+     * @param siteId - id сайта
+     */
+    public void close(int siteId) {
+        NearDuplicateIndex index = activeSites.remove(siteId);
+        if (index != null) {
+            reports.put(siteId, index.getReport());
+        }
+    }
+
+    /**
+     * Отчёт о дубликатах сайта: текущий для идущего обхода или итог последнего
+     *
+     * @return отчёт или null, если сайт не проверялся
+     */
+    public NearDuplicateIndex.Report getReport(int siteId) {
+        NearDuplicateIndex index = activeSites.get(siteId);
+        return index != null ? index.getReport() : reports.get(siteId);
+    }
+
+    /**
+     * Удаление индекса и отчёта сайта (сайт удалён)
+     */
+    public void remove(int siteId) {
+        activeSites.remove(siteId);
+        reports.remove(siteId);
+    }
+}
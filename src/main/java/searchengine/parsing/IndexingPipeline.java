@@ -0,0 +1,164 @@
+package searchengine.parsing;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.PipelineSettings;
+import searchengine.model.Page;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static searchengine.parsing.sitemapping.Utils.*;
+
+/**
+ * Конвейер индексации сайта: загруженные страницы передаются через ограниченную очередь
+ * потокам лемматизации, а те - в пакетную запись {@link LemmaBatchWriter}.
+ * Лемматизация идёт параллельно с загрузкой страниц, перечитывать страницы из БД не нужно.
+ * При заполненной очереди {@link #submit(Page)} блокирует загрузчик (backpressure).
+ */
+@Slf4j
+public class IndexingPipeline {
+    private static final Job END_OF_PAGES = new Job(new Page(), Action.PARSE);
+
+    private final ParseLemma parseLemma;
+    private final int siteId;
+    private final int threads;
+    private final BlockingQueue<Job> queue;
+    private final ExecutorService executor;
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger processed = new AtomicInteger();
+    private volatile boolean isAborted;
+
+    public IndexingPipeline(ParseLemma parseLemma, PipelineSettings settings, int siteId) {
+        this.parseLemma = parseLemma;
+        this.siteId = siteId;
+        this.threads = settings.getLemmatizerThreads();
+        this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("lemmatizer-" + siteId + "-%d")
+                .build());
+    }
+
+    /**
+     * Запуск потоков лемматизации
+     */
+    public void start() {
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::lemmatize);
+        }
+    }
+
+    /**
+     * Передача страницы на лемматизацию, блокируется при заполненной очереди
+     *
+     * @param page - сохранённая страница
+     */
+    public void submit(Page page) {
+        put(new Job(page, Action.PARSE));
+    }
+
+    /**
+     * Передача изменившейся страницы на повторную лемматизацию:
+     * прежние леммы и индексы страницы заменяются новыми
+     *
+     * @param page - обновлённая страница
+     */
+    public void submitChanged(Page page) {
+        put(new Job(page, Action.REPARSE));
+    }
+
+    /**
+     * Удаление страницы, которую сайт больше не отдаёт: леммы и индексы страницы удаляются вместе с ней
+     *
+     * @param page - сохранённая страница
+     */
+    public void submitRemoved(Page page) {
+        put(new Job(page, Action.REMOVE));
+    }
+
+    private void put(Job job) {
+        if (isAborted) {
+            return;
+        }
+        try {
+            queue.put(job);
+            submitted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ожидание лемматизации всех переданных страниц
+     */
+    public void finish() {
+        try {
+            for (int i = 0; i < threads; i++) {
+                queue.put(END_OF_PAGES);
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println();
+        log.info("siteId: {} lemmatized pages: {}", siteId, processed.get());
+    }
+
+    /**
+     * Остановка без обработки оставшихся страниц
+     */
+    public void abort() {
+        isAborted = true;
+        queue.clear();
+        executor.shutdownNow();
+    }
+
+    private void lemmatize() {
+        try {
+            while (!isAborted) {
+                Job job = queue.take();
+                if (job == END_OF_PAGES) {
+                    return;
+                }
+                int countOfLemmas = switch (job.action) {
+                    case PARSE -> parseLemma.parsing(job.page);
+                    case REPARSE -> parseLemma.reparsing(job.page);
+                    case REMOVE -> parseLemma.remove(job.page);
+                };
+                printMessageAboutProgress(job.page, countOfLemmas);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void printMessageAboutProgress(Page page, int countOfLemmas) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Writing lemmas and indices: ").append(ANSI_GREEN).append(processed.incrementAndGet())
+                .append("/").append(submitted.get()).append(ANSI_RESET);
+        builder.append(" siteId:").append(ANSI_CYAN).append(siteId).append(ANSI_RESET);
+        builder.append(" pageId: ").append(ANSI_CYAN).append(page.getPageId()).append(ANSI_RESET);
+        builder.append(" number of lemmas: ").append(ANSI_CYAN).append(countOfLemmas).append(ANSI_RESET);
+        builder.append(" url: ").append(ANSI_BLUE).append(page.getPath()).append(ANSI_RESET);
+        System.out.print(builder + "\r");
+    }
+
+    private enum Action {
+        PARSE, REPARSE, REMOVE
+    }
+
+    private static final class Job {
+        private final Page page;
+        private final Action action;
+
+        private Job(Page page, Action action) {
+            this.page = page;
+            this.action = action;
+        }
+    }
+}
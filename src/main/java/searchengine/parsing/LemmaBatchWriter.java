@@ -0,0 +1,429 @@
+package searchengine.parsing;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.BatchSettings;
+import searchengine.index.InvertedIndex;
+import searchengine.index.LemmaDictionary;
+import searchengine.index.SearchResultCache;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накапливает приращения частот лемм, строки индекса и позиции лемм по многим страницам
+ * и записывает их в БД многострочными INSERT ... ON DUPLICATE KEY UPDATE.
+ * Id лемм берутся из {@link LemmaDictionary}, из БД выбираются только новые леммы.
+ * Запись выполняется при накоплении {@link BatchSettings#getSize()} строк,
+ * по таймеру {@link BatchSettings#getFlushInterval()} или явным вызовом {@link #flush()}.
+ * После записи результаты поиска по изменившимся сайтам удаляются из {@link SearchResultCache}.
+ * Пакет, не записанный за {@link BatchSettings#getRetries()} попыток, отбрасывается целиком (транзакция откатана),
+ * а его сайты отмечаются в {@link #takeWriteFailure(int)}, чтобы сайт получил статус FAILED и был продолжен позже.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaBatchWriter {
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final BatchSettings batchSettings;
+    private final SearchResultCache searchResultCache;
+
+    private final Object flushLock = new Object();
+    private Map<Integer, Map<String, Integer>> pendingFrequencies = new HashMap<>();
+    private List<IndexRow> pendingIndexRows = new ArrayList<>();
+    private List<Object[]> pendingPositions = new ArrayList<>();
+    private Map<Integer, Replacement> pendingReplacements = new HashMap<>();
+    private long lastFlushTime = System.currentTimeMillis();
+    private final Set<Integer> failedSites = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void startScheduler() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("lemma-batch-writer")
+                .setDaemon(true)
+                .build());
+        long interval = batchSettings.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushIfExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopScheduler() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Добавление лемм страницы в буфер
+     *
+     * @param siteId - id сайта
+     * @param pageId - id страницы
+     * @param lemmas    - лемма и кол-во её упоминаний на странице
+     * @param positions   - позиции лемм страницы ({@link searchengine.index.LemmaPositions})
+     * @param contentHash - хэш текста, по которому найдены позиции
+     */
+    public void add(int siteId, int pageId, Map<String, Integer> lemmas, byte[] positions, Long contentHash) {
+        boolean isFull;
+        synchronized (this) {
+            pendingPositions.add(new Object[]{pageId, siteId, contentHash, positions});
+            Map<String, Integer> frequencies = pendingFrequencies.computeIfAbsent(siteId, k -> new HashMap<>());
+            lemmas.forEach((lemma, count) -> {
+                frequencies.merge(lemma, 1, Integer::sum);
+                pendingIndexRows.add(new IndexRow(siteId, pageId, lemma, count));
+            });
+            isFull = pendingIndexRows.size() >= batchSettings.getSize();
+        }
+        if (isFull) {
+            flush();
+        }
+    }
+
+    /**
+     * Замена лемм изменившейся страницы. Прежние индексы страницы удаляются при записи пакета
+     * в той же транзакции, что и новые, а частоты лемм изменяются на разницу: -1 для исчезнувших
+     * со страницы лемм, +1 для новых, частота лемм, оставшихся на странице, не меняется.
+     *
+     * @param siteId - id сайта
+     * @param pageId - id страницы
+     * @param lemmas    - новые леммы страницы и кол-во их упоминаний
+     * @param positions   - новые позиции лемм страницы
+     * @param contentHash - хэш нового текста страницы
+     */
+    public void replace(int siteId, int pageId, Map<String, Integer> lemmas, byte[] positions, Long contentHash) {
+        boolean isFull;
+        synchronized (this) {
+            putReplacement(pageId, new Replacement(siteId, Set.copyOf(lemmas.keySet()), false));
+            pendingPositions.add(new Object[]{pageId, siteId, contentHash, positions});
+            lemmas.forEach((lemma, count) -> pendingIndexRows.add(new IndexRow(siteId, pageId, lemma, count)));
+            isFull = pendingIndexRows.size() >= batchSettings.getSize();
+        }
+        if (isFull) {
+            flush();
+        }
+    }
+
+    /**
+     * Удаление страницы: при записи пакета удаляются страница, её индексы и позиции,
+     * частоты лемм страницы уменьшаются на 1
+     *
+     * @param siteId - id сайта
+     * @param pageId - id страницы
+     */
+    public synchronized void remove(int siteId, int pageId) {
+        putReplacement(pageId, new Replacement(siteId, Set.of(), true));
+    }
+
+    /**
+     * Регистрация замены страницы: строки индекса и позиции страницы, ожидающие записи в этом пакете,
+     * отбрасываются, записывается последняя версия страницы. Если страница была добавлена через
+     * {@link #add}, её приращения частот отменяются - частоты пересчитываются при записи замены.
+     */
+    private void putReplacement(int pageId, Replacement replacement) {
+        boolean wasReplaced = pendingReplacements.put(pageId, replacement) != null;
+        pendingIndexRows.removeIf(row -> {
+            if (row.pageId != pageId) {
+                return false;
+            }
+            if (!wasReplaced) {
+                Map<String, Integer> frequencies = pendingFrequencies.get(row.siteId);
+                if (frequencies != null) {
+                    frequencies.computeIfPresent(row.lemma, (lemma, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+            return true;
+        });
+        pendingPositions.removeIf(row -> (int) row[0] == pageId);
+        pendingFrequencies.computeIfAbsent(replacement.siteId(), k -> new HashMap<>());
+    }
+
+    /**
+     * Запись накопленных лемм и индексов в БД
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Batch batch;
+            synchronized (this) {
+                lastFlushTime = System.currentTimeMillis();
+                if (pendingIndexRows.isEmpty() && pendingPositions.isEmpty() && pendingReplacements.isEmpty()) {
+                    return;
+                }
+                batch = new Batch(pendingFrequencies, pendingIndexRows, pendingPositions, pendingReplacements);
+                pendingFrequencies = new HashMap<>();
+                pendingIndexRows = new ArrayList<>();
+                pendingPositions = new ArrayList<>();
+                pendingReplacements = new HashMap<>();
+            }
+            write(batch);
+        }
+    }
+
+    /**
+     * Были ли потеряны леммы сайта из-за ошибки записи с момента прошлой проверки
+     *
+     * @param siteId - id сайта
+     * @return true если хотя бы один пакет с леммами сайта не записан
+     */
+    public boolean takeWriteFailure(int siteId) {
+        return failedSites.remove(siteId);
+    }
+
+    private void write(Batch batch) {
+        long startTime = System.currentTimeMillis();
+        Written written = writeWithRetries(batch);
+        if (written == null) {
+            failedSites.addAll(batch.frequencies().keySet());
+            resetContentHashes(batch.replacements().keySet());
+            log.error("Пакет лемм не записан: {} index rows, sites {}", batch.indexRows().size(),
+                    batch.frequencies().keySet());
+            return;
+        }
+        written.removedLemmaIds().forEach(invertedIndex::removePage);
+        written.deltas().forEach((siteId, lemmas) -> lemmas.forEach((lemma, delta) ->
+                lemmaDictionary.merge(siteId, lemma, written.lemmaIds().get(siteId).getOrDefault(lemma, 0), delta)));
+        batch.indexRows().forEach(row -> {
+            Integer lemmaId = written.lemmaIds().get(row.siteId).get(row.lemma);
+            if (lemmaId != null) {
+                invertedIndex.add(row.siteId, lemmaId, row.pageId, row.rank);
+            }
+        });
+        batch.frequencies().keySet().forEach(searchResultCache::invalidateSite);
+        log.debug("Batch flush: {} index rows, {} ms", batch.indexRows().size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Запись пакета в одной транзакции, при ошибке транзакция повторяется
+     *
+     * @return результат записи или null, если все попытки неудачны
+     */
+    private Written writeWithRetries(Batch batch) {
+        int attempts = Math.max(1, batchSettings.getRetries());
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> writeTransaction(batch));
+            } catch (Exception e) {
+                log.warn("Ошибка записи пакета лемм, попытка {} из {}: {}", attempt, attempts, e.getMessage());
+            }
+            if (attempt < attempts) {
+                try {
+                    Thread.sleep(batchSettings.getRetryDelay().toMillis() * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Удаление прежних индексов заменяемых страниц, приращения частот, новые индексы и позиции.
+     * Пакет не изменяется, поэтому транзакцию можно повторить.
+     */
+    private Written writeTransaction(Batch batch) {
+        Map<Integer, Map<String, Integer>> deltas = new HashMap<>();
+        batch.frequencies().forEach((siteId, lemmas) -> deltas.put(siteId, new HashMap<>(lemmas)));
+        Map<Integer, List<Integer>> removedLemmaIds = new HashMap<>();
+        batch.replacements().forEach((pageId, replacement) -> {
+            Map<String, Integer> siteDeltas = deltas.computeIfAbsent(replacement.siteId(), k -> new HashMap<>());
+            List<Integer> oldLemmaIds = new ArrayList<>();
+            Set<String> oldLemmas = new HashSet<>();
+            jdbcTemplate.query("select l.lemma_id, l.lemma from search_engine.index_e i "
+                            + "join search_engine.lemma l on l.lemma_id = i.lemma_id where i.page_id = ?",
+                    rs -> {
+                        oldLemmaIds.add(rs.getInt(1));
+                        oldLemmas.add(rs.getString(2));
+                    }, pageId);
+            jdbcTemplate.update("delete from search_engine.index_e where page_id = ?", pageId);
+            if (replacement.isRemoved()) {
+                jdbcTemplate.update("delete from search_engine.page_positions where page_id = ?", pageId);
+                jdbcTemplate.update("delete from search_engine.page where page_id = ?", pageId);
+            }
+            removedLemmaIds.put(pageId, oldLemmaIds);
+            oldLemmas.forEach(lemma -> {
+                if (!replacement.lemmas().contains(lemma)) {
+                    siteDeltas.merge(lemma, -1, Integer::sum);
+                }
+            });
+            replacement.lemmas().forEach(lemma -> {
+                if (!oldLemmas.contains(lemma)) {
+                    siteDeltas.merge(lemma, 1, Integer::sum);
+                } else {
+                    siteDeltas.putIfAbsent(lemma, 0);
+                }
+            });
+        });
+
+        Map<Integer, Map<String, Integer>> ids = new HashMap<>();
+        deltas.forEach((siteId, lemmas) -> {
+            upsertLemmas(siteId, lemmas);
+            ids.put(siteId, getLemmaIds(siteId, lemmas.keySet()));
+            if (lemmas.values().stream().anyMatch(delta -> delta < 0)) {
+                jdbcTemplate.update("delete from search_engine.lemma where site_id = ? and frequency <= 0",
+                        siteId);
+            }
+        });
+        insertIndexRows(batch.indexRows(), ids);
+        jdbcTemplate.batchUpdate("insert into search_engine.page_positions(page_id, site_id, content_hash, positions) "
+                + "values (?, ?, ?, ?) on duplicate key update content_hash = values(content_hash), "
+                + "positions = values(positions)", batch.positions());
+        return new Written(ids, deltas, removedLemmaIds);
+    }
+
+    /**
+     * Заменяемые страницы, не записанные в БД, сохранили прежние индексы при новом тексте.
+     * Сброс хэша текста заставит следующую повторную индексацию лемматизировать их заново.
+     */
+    private void resetContentHashes(Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(pageIds.size());
+        pageIds.forEach(pageId -> args.add(new Object[]{pageId}));
+        try {
+            jdbcTemplate.batchUpdate("update search_engine.page set content_hash = null where page_id = ?", args);
+        } catch (Exception e) {
+            log.warn("Не удалось сбросить хэш страниц {}: {}", pageIds, e.getMessage());
+        }
+    }
+
+    private void flushIfExpired() {
+        boolean isExpired;
+        synchronized (this) {
+            isExpired = System.currentTimeMillis() - lastFlushTime >= batchSettings.getFlushInterval().toMillis();
+        }
+        if (isExpired) {
+            flush();
+        }
+    }
+
+    private void upsertLemmas(int siteId, Map<String, Integer> lemmas) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(lemmas.entrySet());
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Map.Entry<String, Integer>> chunk =
+                    entries.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entries.size()));
+            StringBuilder sql = new StringBuilder("insert into search_engine.lemma(site_id, lemma, frequency) values ");
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                args[i * 3] = siteId;
+                args[i * 3 + 1] = chunk.get(i).getKey();
+                args[i * 3 + 2] = chunk.get(i).getValue();
+            }
+            sql.append(" on duplicate key update frequency = frequency + values(frequency)");
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+
+    private Map<String, Integer> getLemmaIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> newLemmas = new ArrayList<>();
+        for (String lemma : lemmas) {
+            int lemmaId = lemmaDictionary.getLemmaId(siteId, lemma);
+            if (lemmaId == 0) {
+                newLemmas.add(lemma);
+            } else {
+                ids.put(lemma, lemmaId);
+            }
+        }
+        ids.putAll(selectLemmaIds(siteId, newLemmas));
+        return ids;
+    }
+
+    private Map<String, Integer> selectLemmaIds(int siteId, List<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int from = 0; from < lemmas.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<String> chunk = lemmas.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, lemmas.size()));
+            StringBuilder sql = new StringBuilder(
+                    "select lemma_id, lemma from search_engine.lemma where site_id = ? and lemma in (");
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = siteId;
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args[i + 1] = chunk.get(i);
+            }
+            sql.append(")");
+            jdbcTemplate.query(sql.toString(), rs -> {
+                ids.put(rs.getString(2), rs.getInt(1));
+            }, args);
+        }
+        return ids;
+    }
+
+    private void insertIndexRows(List<IndexRow> indexRows, Map<Integer, Map<String, Integer>> lemmaIds) {
+        List<Object[]> rows = new ArrayList<>(indexRows.size());
+        for (IndexRow row : indexRows) {
+            Integer lemmaId = lemmaIds.get(row.siteId).get(row.lemma);
+            if (lemmaId == null) {
+                log.warn("Лемма '{}' не найдена после записи, siteId: {}", row.lemma, row.siteId);
+                continue;
+            }
+            rows.add(new Object[]{row.pageId, lemmaId, row.rank});
+        }
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rows.size()));
+            StringBuilder sql = new StringBuilder(
+                    "insert into search_engine.index_e(page_id, lemma_id, rank_index) values ");
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                System.arraycopy(chunk.get(i), 0, args, i * 3, 3);
+            }
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+
+    /**
+     * Новые леммы заменяемой страницы, для удаляемой страницы лемм нет
+     */
+    private record Replacement(int siteId, Set<String> lemmas, boolean isRemoved) {
+    }
+
+    /**
+     * Накопленный пакет
+     */
+    private record Batch(Map<Integer, Map<String, Integer>> frequencies, List<IndexRow> indexRows,
+                         List<Object[]> positions, Map<Integer, Replacement> replacements) {
+    }
+
+    /**
+     * Результат записи пакета: id лемм и приращения частот по сайтам, id лемм удалённых индексов страниц
+     */
+    private record Written(Map<Integer, Map<String, Integer>> lemmaIds, Map<Integer, Map<String, Integer>> deltas,
+                           Map<Integer, List<Integer>> removedLemmaIds) {
+    }
+
+    private static final class IndexRow {
+        private final int siteId;
+        private final int pageId;
+        private final String lemma;
+        private final float rank;
+
+        private IndexRow(int siteId, int pageId, String lemma, float rank) {
+            this.siteId = siteId;
+            this.pageId = pageId;
+            this.lemma = lemma;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+import searchengine.config.FrontierSettings;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Очередь ссылок сайта по приоритету: сначала загружаются страницы ближе к главной,
+ * страницы, на которые больше ссылок, с высоким приоритетом и свежей датой в карте сайта.
+ * При равном приоритете порядок - в ширину. Если обход остановлен раньше,
+ * самые ценные страницы уже проиндексированы.
+ * Обход заканчивается, когда очередь пуста и ни одна страница не загружается,
+ * или исчерпаны ограничения по глубине, кол-ву страниц и времени.
+ */
+public class CrawlFrontier {
+    private static final Comparator<Slot> ORDER = Comparator.comparingDouble((Slot slot) -> slot.score).reversed()
+            .thenComparingLong(slot -> slot.sequence);
+
+    private final FrontierSettings settings;
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final PriorityQueue<Slot> queue = new PriorityQueue<>(ORDER);
+    private final Map<String, Entry> queued = new HashMap<>();
+    private long sequence;
+    private int activeCount;
+    private int polledCount;
+    private boolean isClosed;
+    /**
+     * Причина остановки до обхода всех ссылок, null - все ссылки обойдены
+     */
+    @Getter
+    private String stopReason;
+
+    public CrawlFrontier(FrontierSettings settings) {
+        this.settings = settings;
+        Duration timeBudget = settings.getTimeBudget();
+        this.hasDeadline = timeBudget != null && !timeBudget.isZero();
+        this.deadline = hasDeadline ? System.nanoTime() + timeBudget.toNanos() : 0;
+    }
+
+    /**
+     * Добавление новой ссылки
+     *
+     * @param url     - ссылка
+     * @param depth   - глубина от главной страницы
+     * @param sitemap - ссылка из карты сайта (null - найдена на странице)
+     * @return false если ссылка глубже допустимого
+     */
+    public synchronized boolean add(String url, int depth, SitemapEntry sitemap) {
+        if (isClosed || !isWithinDepth(depth)) {
+            return false;
+        }
+        Entry entry = new Entry(url, depth, sitemap);
+        queued.put(url, entry);
+        push(entry, score(entry));
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Ссылки этой глубины принимаются в очередь
+     *
+     * @param depth - глубина от главной страницы
+     */
+    public boolean isWithinDepth(int depth) {
+        return settings.getMaxDepth() <= 0 || depth <= settings.getMaxDepth();
+    }
+
+    /**
+     * Ещё одна ссылка на страницу, ожидающую загрузки: приоритет страницы повышается.
+     * Страница переставляется в очереди, только если приоритет вырос не меньше чем на
+     * {@link FrontierSettings#getRescoreThreshold()}, иначе куча росла бы с каждой найденной ссылкой.
+     *
+     * @param url - ссылка
+     */
+    public synchronized void addInlink(String url) {
+        Entry entry = queued.get(url);
+        if (entry != null) {
+            entry.inlinks++;
+            double score = score(entry);
+            if (score - entry.score >= settings.getRescoreThreshold()) {
+                push(entry, score);
+            }
+        }
+    }
+
+    /**
+     * Ссылка с наибольшим приоритетом, ожидает, пока другие потоки загружают страницы
+     *
+     * @return ссылка или null, если обход закончен
+     */
+    public synchronized Entry poll() throws InterruptedException {
+        while (!isClosed) {
+            if (settings.getMaxPages() > 0 && polledCount >= settings.getMaxPages()) {
+                stop("max pages " + settings.getMaxPages());
+                break;
+            }
+            if (hasDeadline && System.nanoTime() - deadline >= 0) {
+                stop("time budget " + settings.getTimeBudget());
+                break;
+            }
+            Slot slot = queue.poll();
+            if (slot != null) {
+                if (slot.version != slot.entry.version) {
+                    continue;
+                }
+                queued.remove(slot.entry.url);
+                activeCount++;
+                polledCount++;
+                return slot.entry;
+            }
+            if (activeCount == 0) {
+                break;
+            }
+            wait(hasDeadline ? Math.max(1, (deadline - System.nanoTime()) / 1_000_000) : 0);
+        }
+        return null;
+    }
+
+    /**
+     * Страница, полученная из {@link #poll()}, обработана
+     */
+    public synchronized void complete() {
+        activeCount--;
+        notifyAll();
+    }
+
+    /**
+     * Остановка обхода, ожидающие потоки получают null
+     */
+    public synchronized void close() {
+        isClosed = true;
+        notifyAll();
+    }
+
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    public synchronized int getPolledCount() {
+        return polledCount;
+    }
+
+    private void stop(String reason) {
+        stopReason = reason;
+        isClosed = true;
+        notifyAll();
+    }
+
+    private void push(Entry entry, double score) {
+        entry.version++;
+        entry.score = score;
+        queue.add(new Slot(entry, entry.version, score, sequence++));
+    }
+
+    private double score(Entry entry) {
+        double score = settings.getDepthWeight() / (1 + entry.depth)
+                + settings.getInlinkWeight() * Math.log1p(entry.inlinks);
+        if (entry.sitemap != null) {
+            score += settings.getSitemapWeight() * entry.sitemap.getPriority();
+            Instant lastModified = entry.sitemap.getLastModified();
+            long halfLife = settings.getFreshnessHalfLife().toSeconds();
+            if (lastModified != null && halfLife > 0) {
+                double age = Math.max(0, Duration.between(lastModified, Instant.now()).toSeconds());
+                score += settings.getFreshnessWeight() * Math.pow(0.5, age / halfLife);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Ссылка в очереди
+     */
+    @Getter
+    public static class Entry {
+        private final String url;
+        private final int depth;
+        private final SitemapEntry sitemap;
+        private int inlinks;
+        private int version;
+        private double score;
+
+        private Entry(String url, int depth, SitemapEntry sitemap) {
+            this.url = url;
+            this.depth = depth;
+            this.sitemap = sitemap;
+        }
+    }
+
+    /**
+     * Элемент очереди с приоритетом на момент добавления, при изменении приоритета
+     * добавляется новый элемент, а устаревший пропускается по номеру версии
+     */
+    private static final class Slot {
+        private final Entry entry;
+        private final int version;
+        private final double score;
+        private final long sequence;
+
+        private Slot(Entry entry, int version, double score, long sequence) {
+            this.entry = entry;
+            this.version = version;
+            this.score = score;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.FrontierSettings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Хранилище найденных при обходе ссылок: по файлу на сайт в {@link FrontierSettings#getDirectory()}.
+ * Файл пополняется во время обхода и удаляется после успешного завершения,
+ * по нему обход остановленного или прерванного сайта продолжается с места остановки.
+ * Файл сбрасывается на диск порциями, поэтому после сбоя последняя строка может быть оборвана:
+ * строка без перевода строки в конце файла отбрасывается, каждая ссылка проверяется {@link UrlNormalizer}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlFrontierStore {
+    private final FrontierSettings frontierSettings;
+    private final UrlNormalizer urlNormalizer;
+
+    public boolean isResumeEnabled() {
+        return frontierSettings.isResume();
+    }
+
+    public boolean exists(int siteId) {
+        return Files.exists(getFile(siteId));
+    }
+
+    /**
+     * Открытие файла сайта на дозапись
+     *
+     * @param siteId - id сайта
+     * @return файл или null, если его не удалось открыть
+     */
+    public FrontierLog open(int siteId) {
+        try {
+            Files.createDirectories(getFile(siteId).getParent());
+            truncateIncompleteLine(getFile(siteId));
+            return new FrontierLog(getFile(siteId), frontierSettings.getFlushEvery());
+        } catch (IOException e) {
+            log.warn("Не удалось открыть файл ссылок сайта {}: {}", siteId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Найденные ссылки сайта в порядке обнаружения
+     *
+     * @param siteId - id сайта
+     * @return < ссылка, глубина или {@link FrontierLog#UNKNOWN_DEPTH} >
+     */
+    public Map<String, Integer> load(int siteId) {
+        Map<String, Integer> urls = new LinkedHashMap<>();
+        Path file = getFile(siteId);
+        if (!Files.exists(file)) {
+            return urls;
+        }
+        int rejected = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean isTerminated = endsWithNewLine(file);
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (next == null && !isTerminated) {
+                    // оборванная при сбое последняя строка
+                    rejected++;
+                    break;
+                }
+                if (!line.isBlank() && !addLine(line, urls)) {
+                    rejected++;
+                }
+                line = next;
+            }
+        } catch (IOException e) {
+            log.warn("Ошибка чтения файла ссылок сайта {}: {}", siteId, e.getMessage());
+        }
+        if (rejected > 0) {
+            log.warn("В файле ссылок сайта {} пропущено повреждённых строк: {}", siteId, rejected);
+        }
+        return urls;
+    }
+
+    /**
+     * Ссылка и глубина из строки файла
+     *
+     * @return false если строка не содержит допустимой ссылки
+     */
+    private boolean addLine(String line, Map<String, Integer> urls) {
+        int separator = line.lastIndexOf(FrontierLog.DEPTH_SEPARATOR);
+        String url = separator < 0 ? line : line.substring(0, separator);
+        int depth = separator < 0 ? FrontierLog.UNKNOWN_DEPTH : parseDepth(line.substring(separator + 1));
+        String normalized = urlNormalizer.normalize(url);
+        if (normalized == null || (separator >= 0 && depth == FrontierLog.UNKNOWN_DEPTH)) {
+            return false;
+        }
+        urls.putIfAbsent(normalized, depth);
+        return true;
+    }
+
+    private static int parseDepth(String value) {
+        try {
+            int depth = Integer.parseInt(value);
+            return depth < 0 ? FrontierLog.UNKNOWN_DEPTH : depth;
+        } catch (NumberFormatException e) {
+            return FrontierLog.UNKNOWN_DEPTH;
+        }
+    }
+
+    private static boolean endsWithNewLine(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Обрезает оборванную последнюю строку, чтобы дозапись начиналась с новой строки
+     */
+    private static void truncateIncompleteLine(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            long end = channel.size();
+            while (end > 0) {
+                buffer.clear();
+                channel.read(buffer, end - 1);
+                if (buffer.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < channel.size()) {
+                channel.truncate(end);
+            }
+        }
+    }
+
+    public void delete(int siteId) {
+        try {
+            Files.deleteIfExists(getFile(siteId));
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл ссылок сайта {}: {}", siteId, e.getMessage());
+        }
+    }
+
+    private Path getFile(int siteId) {
+        return Paths.get(frontierSettings.getDirectory(), "site-" + siteId + ".frontier");
+    }
+}
@@ -0,0 +1,224 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+import lombok.Setter;
+import searchengine.index.NearDuplicateIndex;
+import searchengine.parsing.IndexingPipeline;
+import searchengine.repository.PageRepository;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Состояние обхода одного сайта: посещённые ссылки, пул, конвейер, счётчики и признак отмены.
+ * У каждого сайта своя сессия, поэтому сайты индексируются параллельно
+ * без общих изменяемых данных, а память сессии освобождается по окончании обхода.
+ */
+@Getter
+public class CrawlSession {
+    private final int siteId;
+    private final String domain;
+    private final String url;
+    private final PageRepository pageRepository;
+    private final PageFetcher pageFetcher;
+    private final UrlNormalizer urlNormalizer;
+    private final IndexingPipeline pipeline;
+    /**
+     * Повторная индексация: сохранённые страницы загружаются условными запросами,
+     * на лемматизацию передаются только изменившиеся
+     */
+    private final boolean incremental;
+    private final UrlFingerprintSet visitedUrls = new UrlFingerprintSet();
+    private final AtomicInteger errorPages = new AtomicInteger();
+    private final AtomicInteger unchangedPages = new AtomicInteger();
+    /**
+     * Страницы, чья каноническая ссылка уже загружена
+     */
+    private final AtomicInteger canonicalDuplicates = new AtomicInteger();
+    /**
+     * Сохранённые страницы, удалённые при повторной индексации (ответ 4xx)
+     */
+    private final AtomicInteger removedPages = new AtomicInteger();
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    @Setter
+    private volatile ForkJoinPool pool;
+    @Setter
+    private volatile ExecutorCrawler executorCrawler;
+    @Setter
+    private volatile FrontierLog frontierLog;
+    /**
+     * Отпечатки страниц сайта для поиска дубликатов (null - поиск выключен)
+     */
+    @Setter
+    private volatile NearDuplicateIndex duplicateIndex;
+    /**
+     * Очередь ссылок по приоритету (режим обхода priority, иначе null)
+     */
+    @Setter
+    private volatile CrawlFrontier frontier;
+    /**
+     * Ссылки из карт сайта по канонической ссылке, нужны до заполнения очереди
+     */
+    private final Map<String, SitemapEntry> sitemapEntries = new LinkedHashMap<>();
+    /**
+     * Глубина начальных ссылок продолженного обхода из файла ссылок, нужна до заполнения очереди
+     */
+    private final Map<String, Integer> startDepths = new HashMap<>();
+
+    /**
+     * Домен и ссылка на главную страницу приводятся {@link UrlNormalizer} к тому же виду, что и ссылки
+     * со страниц (с "www." или без - по настройке), иначе ссылки сайта не совпали бы с его доменом
+     *
+     * @param domain   - протокол и домен сайта, если ссылку не удалось привести к каноническому виду
+     * @param pipeline - конвейер лемматизации (null - страницы не передаются на лемматизацию)
+     */
+    public CrawlSession(int siteId, String domain, String url, PageRepository pageRepository,
+                        PageFetcher pageFetcher, UrlNormalizer urlNormalizer, IndexingPipeline pipeline,
+                        boolean incremental) {
+        String origin = urlNormalizer.origin(url);
+        String normalizedUrl = urlNormalizer.normalize(url);
+        this.siteId = siteId;
+        this.domain = origin != null ? origin : domain;
+        this.url = normalizedUrl != null ? normalizedUrl : url;
+        this.pageRepository = pageRepository;
+        this.pageFetcher = pageFetcher;
+        this.urlNormalizer = urlNormalizer;
+        this.pipeline = pipeline;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Каноническая ссылка на страницу этого сайта
+     *
+     * @param link - абсолютная ссылка
+     * @return ссылка после {@link UrlNormalizer} или null, если ссылка ведёт на другой сайт или не загружается
+     */
+    public String normalizeLink(String link) {
+        String normalized = urlNormalizer.normalize(link);
+        if (normalized == null || !normalized.startsWith(domain)) {
+            return null;
+        }
+        if (normalized.length() > domain.length()) {
+            char next = normalized.charAt(domain.length());
+            if (next != '/' && next != '?') {
+                return null;
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Отмечает ссылку как посещённую
+     *
+     * @param url - ссылка
+     * @return true если ссылка встретилась впервые
+     */
+    public boolean markVisited(String url) {
+        return markVisited(url, FrontierLog.UNKNOWN_DEPTH);
+    }
+
+    /**
+     * Отмечает ссылку как посещённую, глубина ссылки записывается в файл ссылок
+     * для продолжения обхода в режиме priority
+     *
+     * @param url   - ссылка
+     * @param depth - глубина от главной страницы
+     * @return true если ссылка встретилась впервые
+     */
+    public boolean markVisited(String url, int depth) {
+        boolean isNew = visitedUrls.add(visitedKey(url));
+        FrontierLog log = frontierLog;
+        if (isNew && log != null) {
+            log.append(url, depth);
+        }
+        return isNew;
+    }
+
+    /**
+     * Отмечает ссылку как посещённую без записи в файл ссылок (при продолжении обхода)
+     *
+     * @param url - ссылка
+     */
+    public void seedVisited(String url) {
+        visitedUrls.add(visitedKey(url));
+    }
+
+    public boolean isVisited(String url) {
+        return visitedUrls.contains(visitedKey(url));
+    }
+
+    /**
+     * Ссылки с косой чертой в конце пути и без неё ведут на одну страницу
+     * (путь страницы в БД всегда хранится с косой чертой)
+     */
+    private static String visitedKey(String url) {
+        int queryStart = url.indexOf('?');
+        int pathEnd = queryStart < 0 ? url.length() : queryStart;
+        if (pathEnd > 0 && url.charAt(pathEnd - 1) == '/') {
+            return url.substring(0, pathEnd - 1) + url.substring(pathEnd);
+        }
+        return url;
+    }
+
+    public int getVisitedCount() {
+        return visitedUrls.size();
+    }
+
+    /**
+     * Обход отменён для этого сайта или остановлена вся индексация
+     */
+    public boolean isCancelled() {
+        return cancelled.get() || SiteParser.isCancel();
+    }
+
+    /**
+     * Отмена обхода сайта
+     */
+    public void cancel() {
+        cancelled.set(true);
+        ForkJoinPool currentPool = pool;
+        if (currentPool != null) {
+            currentPool.shutdownNow();
+        }
+        ExecutorCrawler crawler = executorCrawler;
+        if (crawler != null) {
+            crawler.stop();
+        }
+        CrawlFrontier currentFrontier = frontier;
+        if (currentFrontier != null) {
+            currentFrontier.close();
+        }
+        if (pipeline != null) {
+            pipeline.abort();
+        }
+    }
+
+    /**
+     * Память, занятая множеством посещённых ссылок, в пересчёте на миллион ссылок
+     */
+    public long getVisitedMemoryPerMillion() {
+        return visitedUrls.memoryBytesPerMillion();
+    }
+
+    /**
+     * Освобождение памяти сессии после окончания обхода
+     */
+    public void close() {
+        visitedUrls.clear();
+        sitemapEntries.clear();
+        startDepths.clear();
+        FrontierLog log = frontierLog;
+        if (log != null) {
+            log.close();
+        }
+        frontierLog = null;
+        pool = null;
+        executorCrawler = null;
+        frontier = null;
+    }
+}
@@ -0,0 +1,55 @@
+package searchengine.parsing.sitemapping;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+
+/**
+ * Поток тела ответа с общим сроком чтения. Заблокированное чтение прерывает закрытие
+ * исходного потока по таймеру, после срока любое чтение завершается {@link HttpTimeoutException}.
+ */
+class DeadlineInputStream extends FilterInputStream {
+    private final long deadline;
+
+    /**
+     * @param in       - исходный поток
+     * @param deadline - срок по {@link System#nanoTime()}
+     */
+    DeadlineInputStream(InputStream in, long deadline) {
+        super(in);
+        this.deadline = deadline;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkDeadline();
+        try {
+            int value = super.read();
+            checkDeadline();
+            return value;
+        } catch (IOException e) {
+            checkDeadline();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkDeadline();
+        try {
+            int count = super.read(b, off, len);
+            checkDeadline();
+            return count;
+        } catch (IOException e) {
+            checkDeadline();
+            throw e;
+        }
+    }
+
+    private void checkDeadline() throws HttpTimeoutException {
+        if (System.nanoTime() - deadline >= 0) {
+            throw new HttpTimeoutException("response body timed out");
+        }
+    }
+}
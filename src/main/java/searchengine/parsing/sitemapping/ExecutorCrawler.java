@@ -0,0 +1,94 @@
+package searchengine.parsing.sitemapping;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обход сайта без рекурсии ForkJoin: каждая страница загружается отдельной задачей
+ * в виртуальном потоке (если JVM их поддерживает), кол-во одновременных запросов
+ * к хосту и их частоту ограничивает {@link PolitenessScheduler}.
+ */
+@Slf4j
+public class ExecutorCrawler {
+    private final ExecutorService executor;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    public ExecutorCrawler(int maxConnectionsPerHost) {
+        this.executor = newExecutor(maxConnectionsPerHost);
+    }
+
+    /**
+     * Обход сайта начиная с начальных задач, возвращается после обработки всех найденных ссылок
+     *
+     * @param startTasks - задачи корневой страницы или ссылок, оставшихся с прерванного обхода
+     */
+    public void crawl(List<ParsePageTask> startTasks) throws InterruptedException {
+        if (startTasks.isEmpty()) {
+            executor.shutdown();
+            return;
+        }
+        pendingTasks.incrementAndGet();
+        startTasks.forEach(this::submit);
+        complete();
+        done.await();
+        executor.shutdown();
+    }
+
+    /**
+     * Остановка обхода
+     */
+    public void stop() {
+        executor.shutdownNow();
+        done.countDown();
+    }
+
+    private void submit(ParsePageTask task) {
+        pendingTasks.incrementAndGet();
+        try {
+            executor.execute(() -> process(task));
+        } catch (RejectedExecutionException e) {
+            complete();
+        }
+    }
+
+    private void process(ParsePageTask task) {
+        try {
+            if (task.getSession().isCancelled()) {
+                return;
+            }
+            task.processPage().forEach(url -> submit(task.prepareNewPage(url)));
+        } catch (Exception e) {
+            log.warn("Ошибка обработки страницы {}: {}", task.getUrl(), e.getMessage());
+        } finally {
+            complete();
+        }
+    }
+
+    private void complete() {
+        if (pendingTasks.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Executor с виртуальным потоком на задачу (Java 21+), иначе пул обычных потоков
+     */
+    static ExecutorService newExecutor(int maxConnectionsPerHost) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available, using platform threads: {}", maxConnectionsPerHost);
+            return Executors.newFixedThreadPool(maxConnectionsPerHost, new ThreadFactoryBuilder()
+                    .setNameFormat("crawler-%d")
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+
+/**
+ * Результат загрузки страницы
+ */
+@Getter
+public class FetchResult {
+    private static final int NOT_MODIFIED = 304;
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * HTTP-код ответа, 0 - страница не загружена (ошибка соединения, не HTML и т.п.)
+     */
+    private final int code;
+    /**
+     * Заголовок, текст и ссылки страницы, null если страница не загружена или ответ не 2xx
+     */
+    private final PageContent content;
+    private final String etag;
+    private final String lastModified;
+
+    public FetchResult(int code, PageContent content, String etag, String lastModified) {
+        this.code = code;
+        this.content = content;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public static FetchResult failed() {
+        return new FetchResult(0, null, null, null);
+    }
+
+    /**
+     * Страница не изменилась с прошлой загрузки (ответ на условный запрос)
+     */
+    public boolean isNotModified() {
+        return code == NOT_MODIFIED;
+    }
+
+    /**
+     * Страница удалена или недоступна (ошибка клиента 4xx, кроме временных 408 и 429)
+     */
+    public boolean isGone() {
+        return code >= 400 && code < 500 && code != REQUEST_TIMEOUT && code != TOO_MANY_REQUESTS;
+    }
+}
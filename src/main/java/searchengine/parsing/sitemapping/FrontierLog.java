@@ -0,0 +1,67 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл найденных ссылок сайта, открытый на дозапись: одна ссылка в строке,
+ * через табуляцию - глубина ссылки, если она известна
+ */
+@Slf4j
+public class FrontierLog implements AutoCloseable {
+    /**
+     * Глубина ссылки не известна (начальные ссылки и обход без очереди приоритетов)
+     */
+    public static final int UNKNOWN_DEPTH = -1;
+    static final char DEPTH_SEPARATOR = '\t';
+
+    private final Path file;
+    private final BufferedWriter writer;
+    private final int flushEvery;
+    private int unflushed;
+
+    public FrontierLog(Path file, int flushEvery) throws IOException {
+        this.file = file;
+        this.flushEvery = flushEvery;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Запись найденной ссылки
+     *
+     * @param url   - ссылка
+     * @param depth - глубина от главной страницы или {@link #UNKNOWN_DEPTH}
+     */
+    public synchronized void append(String url, int depth) {
+        try {
+            writer.write(url);
+            if (depth != UNKNOWN_DEPTH) {
+                writer.write(DEPTH_SEPARATOR);
+                writer.write(Integer.toString(depth));
+            }
+            writer.newLine();
+            if (++unflushed >= flushEvery) {
+                writer.flush();
+                unflushed = 0;
+            }
+        } catch (IOException e) {
+            log.warn("Ошибка записи в {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.PolitenessSettings;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение запросов к одному хосту: не больше maxConnections одновременных запросов
+ * и не чаще текущей скорости. Скорость меняется по AIMD: растёт на
+ * {@link PolitenessSettings#getIncreaseStep()} после успешного ответа и умножается на
+ * {@link PolitenessSettings#getDecreaseFactor()} после 429/5xx или медленного ответа.
+ * Скорость уменьшается не чаще раза за время ответа: перегрузку, о которой сообщили запросы,
+ * отправленные до последнего уменьшения, это уменьшение уже учло.
+ * Интервал между запросами не меньше Crawl-delay из robots.txt.
+ */
+@Slf4j
+public class HostScheduler {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String host;
+    private final PolitenessSettings settings;
+    private final Semaphore connections;
+    private final long minIntervalNanos;
+    private double ratePerSecond;
+    private long nextRequestTime = System.nanoTime();
+    private long lastDecreaseTime = Long.MIN_VALUE;
+
+    /**
+     * @param host           - хост
+     * @param settings       - настройки скорости
+     * @param maxConnections - максимальное кол-во одновременных запросов
+     * @param crawlDelay     - Crawl-delay из robots.txt в секундах, 0 - не задан
+     */
+    public HostScheduler(String host, PolitenessSettings settings, int maxConnections, double crawlDelay) {
+        this.host = host;
+        this.settings = settings;
+        this.connections = new Semaphore(maxConnections);
+        this.minIntervalNanos = (long) (crawlDelay * NANOS_PER_SECOND);
+        this.ratePerSecond = settings.getMaxRequestsPerSecond();
+    }
+
+    /**
+     * Ожидание разрешения на запрос, после запроса обязателен вызов {@link #release(int, long, long)}
+     */
+    public void acquire() throws InterruptedException {
+        connections.acquire();
+        try {
+            long delay = reserveSlot();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            connections.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Завершение запроса и пересчёт скорости
+     *
+     * @param code          - код ответа
+     * @param latencyMillis - время ответа
+     * @param retryAfter    - пауза из заголовка Retry-After в секундах, 0 - не задана
+     */
+    public void release(int code, long latencyMillis, long retryAfter) {
+        try {
+            boolean isOverloaded = code == 429 || code >= 500
+                    || latencyMillis > settings.getSlowResponse().toMillis();
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (isOverloaded && retryAfter > 0) {
+                    nextRequestTime = Math.max(nextRequestTime, now + retryAfter * NANOS_PER_SECOND);
+                }
+                long requestStartTime = now - TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+                if (isOverloaded && (lastDecreaseTime == Long.MIN_VALUE || requestStartTime - lastDecreaseTime >= 0)) {
+                    ratePerSecond = Math.max(settings.getMinRequestsPerSecond(),
+                            ratePerSecond * settings.getDecreaseFactor());
+                    lastDecreaseTime = now;
+                    log.debug("host: {} code: {} {} ms, rate decreased to {}/s",
+                            host, code, latencyMillis, String.format("%.2f", ratePerSecond));
+                } else if (!isOverloaded && code > 0) {
+                    ratePerSecond = Math.min(settings.getMaxRequestsPerSecond(),
+                            ratePerSecond + settings.getIncreaseStep());
+                }
+            }
+        } finally {
+            connections.release();
+        }
+    }
+
+    public synchronized double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * Резервирует время следующего запроса
+     *
+     * @return сколько нужно подождать до запроса, нс
+     */
+    private synchronized long reserveSlot() {
+        long now = System.nanoTime();
+        long interval = Math.max(minIntervalNanos, (long) (NANOS_PER_SECOND / ratePerSecond));
+        long requestTime = Math.max(now, nextRequestTime);
+        nextRequestTime = requestTime + interval;
+        return requestTime - now;
+    }
+}
@@ -0,0 +1,245 @@
+package searchengine.parsing.sitemapping;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.brotli.dec.BrotliInputStream;
+import org.springframework.stereotype.Component;
+import searchengine.config.HttpSettings;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP-клиент загрузчика: один {@link HttpClient} на приложение, соединения с хостом
+ * переиспользуются (keep-alive, HTTP/2 при поддержке сервером).
+ * Ответы gzip/deflate/br распаковываются, тело ответа с неподходящим типом содержимого не загружается.
+ * Ответ с телом больше {@link HttpSettings#getMaxBodySize()} (по Content-Length или после распаковки)
+ * завершается ошибкой, а не обрезается: обрезанная страница сохранилась бы как полная.
+ * Тело должно быть получено за {@link HttpSettings#getBodyTimeout()}: по истечении срока поток закрывается
+ * по таймеру, и загрузка завершается ошибкой, а не занимает поток обхода бесконечно.
+ */
+@Slf4j
+@Component
+public class HttpFetchClient {
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+
+    private final HttpSettings settings;
+    private final HttpClient httpClient;
+    private final Map<String, HostStats> stats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService bodyWatchdog = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("http-body-watchdog").setDaemon(true).build());
+
+    public HttpFetchClient(HttpSettings settings) {
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(settings.getConnectTimeout())
+                .build();
+    }
+
+    /**
+     * Получатель тела ответа в виде потока: распакованного и ограниченного по размеру
+     */
+    @FunctionalInterface
+    public interface BodyReader {
+        /**
+         * @param body    - тело ответа, закрывается клиентом
+         * @param charset - кодировка из Content-Type или null
+         * @param uri     - итоговый адрес после перенаправлений
+         */
+        void read(InputStream body, String charset, URI uri) throws IOException;
+    }
+
+    /**
+     * GET-запрос страницы: тело читается только для типов из {@link HttpSettings#getContentTypes()}
+     * и передаётся потоком в bodyReader, не накапливаясь в памяти
+     *
+     * @param url        - ссылка
+     * @param headers    - дополнительные заголовки запроса
+     * @param bodyReader - получатель тела ответа
+     * @return ответ
+     */
+    public HttpFetchResponse getPage(String url, Map<String, String> headers, BodyReader bodyReader)
+            throws IOException, InterruptedException {
+        return get(url, headers, true, bodyReader);
+    }
+
+    /**
+     * GET-запрос файла (robots.txt, sitemap) без проверки типа содержимого
+     *
+     * @param url - ссылка
+     * @return ответ с телом в {@link HttpFetchResponse#getBody()}
+     */
+    public HttpFetchResponse getFile(String url) throws IOException, InterruptedException {
+        return get(url, Map.of(), false, null);
+    }
+
+    /**
+     * GET-запрос файла с передачей тела потоком
+     *
+     * @param url        - ссылка
+     * @param bodyReader - получатель тела ответа
+     * @return ответ
+     */
+    public HttpFetchResponse getFile(String url, BodyReader bodyReader) throws IOException, InterruptedException {
+        return get(url, Map.of(), false, bodyReader);
+    }
+
+    /**
+     * Статистика запросов к хосту
+     *
+     * @param url - ссылка на любую страницу хоста
+     */
+    public HostStats getStats(String url) {
+        return stats.computeIfAbsent(originOf(URI.create(url)), k -> new HostStats());
+    }
+
+    private HttpFetchResponse get(String url, Map<String, String> headers, boolean isPage, BodyReader bodyReader)
+            throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(settings.getReadTimeout())
+                .header("User-Agent", settings.getUserAgent())
+                .header("Referer", settings.getReferrer())
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+        headers.forEach(builder::header);
+
+        long startTime = System.currentTimeMillis();
+        long maxBodySize = settings.getMaxBodySize().toBytes();
+        HttpResponse<InputStream> response = httpClient.send(builder.build(), responseInfo -> {
+            boolean isAccepted = responseInfo.statusCode() < 300
+                    && (!isPage || isAcceptedContentType(responseInfo.headers().firstValue("Content-Type").orElse(null)))
+                    && !isTooLarge(responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1), maxBodySize);
+            return isAccepted
+                    ? HttpResponse.BodySubscribers.ofInputStream()
+                    : HttpResponse.BodySubscribers.replacing(InputStream.nullInputStream());
+        });
+
+        byte[] body = null;
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        boolean isBodyRead = response.statusCode() < 300 && (!isPage || isAcceptedContentType(contentType));
+        if (isBodyRead && isTooLarge(response.headers().firstValueAsLong("Content-Length").orElse(-1), maxBodySize)) {
+            throw new IOException("response body exceeds " + maxBodySize + " bytes: " + url);
+        }
+        long size = 0;
+        InputStream in = response.body();
+        long bodyTimeout = settings.getBodyTimeout().toNanos();
+        ScheduledFuture<?> watchdog = isBodyRead
+                ? bodyWatchdog.schedule(() -> closeQuietly(in), bodyTimeout, TimeUnit.NANOSECONDS)
+                : null;
+        try (in) {
+            if (isBodyRead) {
+                InputStream limited = new DeadlineInputStream(in, System.nanoTime() + bodyTimeout);
+                CountingInputStream decoded = new CountingInputStream(new SizeLimitInputStream(
+                        decode(limited, response.headers().firstValue("Content-Encoding").orElse("")),
+                        maxBodySize));
+                if (bodyReader == null) {
+                    body = ByteStreams.toByteArray(decoded);
+                } else {
+                    bodyReader.read(decoded, HttpFetchResponse.charsetOf(contentType), response.uri());
+                }
+                size = decoded.getCount();
+            }
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+        getStats(originOf(uri)).record(response.version(), System.currentTimeMillis() - startTime, size);
+
+        return new HttpFetchResponse(response.statusCode(), response.uri(), contentType,
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                response.headers().firstValue("Retry-After").orElse(null),
+                isBodyRead, body);
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bodyWatchdog.shutdownNow();
+    }
+
+    private static String originOf(URI uri) {
+        String port = uri.getPort() == -1 ? "" : ":" + uri.getPort();
+        return (uri.getScheme() + "://" + uri.getHost() + port).toLowerCase(Locale.ROOT);
+    }
+
+    private static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(in);
+            case "deflate" -> new InflaterInputStream(in);
+            case "br" -> new BrotliInputStream(in);
+            default -> in;
+        };
+    }
+
+    private static boolean isTooLarge(long contentLength, long maxBodySize) {
+        return contentLength > maxBodySize;
+    }
+
+    private boolean isAcceptedContentType(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return settings.getContentTypes().stream().anyMatch(type::startsWith);
+    }
+
+    /**
+     * Статистика запросов к хосту. {@link HttpClient} не сообщает о повторном использовании
+     * соединений, поэтому о нём судят по доле ответов HTTP/2 (все запросы в одном соединении)
+     * и среднему времени ответа.
+     */
+    @Getter
+    public static class HostStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder http2Responses = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private void record(HttpClient.Version version, long millis, long size) {
+            requests.increment();
+            if (version == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            }
+            totalMillis.add(millis);
+            bytes.add(size);
+        }
+
+        @Override
+        public String toString() {
+            long count = requests.sum();
+            return "requests: " + count
+                    + ", http/2: " + http2Responses.sum()
+                    + ", avg time: " + (count == 0 ? 0 : totalMillis.sum() / count) + " ms"
+                    + ", KB: " + bytes.sum() / 1024;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Ответ {@link HttpFetchClient}: код, итоговый адрес после перенаправлений, заголовки и тело
+ */
+@Getter
+public class HttpFetchResponse {
+    private final int code;
+    private final URI uri;
+    private final String contentType;
+    private final String etag;
+    private final String lastModified;
+    private final String retryAfter;
+    /**
+     * Тело ответа прочитано (код 2xx и подходящий тип содержимого)
+     */
+    private final boolean bodyRead;
+    /**
+     * Распакованное тело ответа, null если тело не загружалось или передано в {@link HttpFetchClient.BodyReader}
+     */
+    private final byte[] body;
+
+    public HttpFetchResponse(int code, URI uri, String contentType, String etag, String lastModified,
+                             String retryAfter, boolean bodyRead, byte[] body) {
+        this.code = code;
+        this.uri = uri;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.retryAfter = retryAfter;
+        this.bodyRead = bodyRead;
+        this.body = body;
+    }
+
+    /**
+     * Кодировка из Content-Type, null - не указана
+     */
+    public String getCharset() {
+        return charsetOf(contentType);
+    }
+
+    /**
+     * Кодировка из значения заголовка Content-Type
+     *
+     * @param contentType - значение заголовка
+     * @return кодировка или null, если не указана или не поддерживается
+     */
+    public static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                String charset = pair[1].trim().replace("\"", "");
+                return Charset.isSupported(charset) ? charset : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Тело ответа как текст
+     */
+    public String getText() {
+        if (body == null) {
+            return "";
+        }
+        Charset charset = Optional.ofNullable(getCharset()).map(Charset::forName).orElse(StandardCharsets.UTF_8);
+        return new String(body, charset);
+    }
+
+    public boolean hasContentType(String type) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(type);
+    }
+}
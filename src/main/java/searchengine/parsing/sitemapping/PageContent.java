@@ -0,0 +1,24 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Извлечённое из страницы: заголовок, видимый текст, абсолютные ссылки
+ * и каноническая ссылка из link rel="canonical" (null, если не указана)
+ */
+@Getter
+public class PageContent {
+    private final String title;
+    private final String text;
+    private final List<String> links;
+    private final String canonicalUrl;
+
+    public PageContent(String title, String text, List<String> links, String canonicalUrl) {
+        this.title = title;
+        this.text = text;
+        this.links = links;
+        this.canonicalUrl = canonicalUrl;
+    }
+}
@@ -0,0 +1,167 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.Page;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Загрузка страниц через общий {@link HttpFetchClient}. Запросы к хосту проходят через {@link PolitenessScheduler}:
+ * ограничение одновременных запросов и скорости, замедление при 429/5xx.
+ * Для ранее сохранённой страницы отправляется условный запрос
+ * (If-None-Match / If-Modified-Since), код ответа возвращается в {@link FetchResult}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+    private static final int CHARSET_SNIFF_SIZE = 1024;
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final PolitenessScheduler politenessScheduler;
+    private final HttpFetchClient httpFetchClient;
+    private final CrawlerSettings crawlerSettings;
+
+    /**
+     * Загрузка страницы, после ответа 429/503 запрос повторяется
+     * до {@link searchengine.config.PolitenessSettings#getMaxRetries()} раз
+     *
+     * @param url        - ссылка на страницу
+     * @param storedPage - сохранённая ранее страница или null
+     * @return результат загрузки
+     */
+    public FetchResult fetch(String url, Page storedPage) {
+        HostScheduler hostScheduler = politenessScheduler.forUrl(url);
+        int maxRetries = politenessScheduler.getSettings().getMaxRetries();
+        FetchResult result = FetchResult.failed();
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            try {
+                hostScheduler.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return FetchResult.failed();
+            }
+            long startTime = System.currentTimeMillis();
+            HttpFetchResponse response = null;
+            try {
+                PageContent[] content = new PageContent[1];
+                response = httpFetchClient.getPage(url, getConditionalHeaders(storedPage),
+                        (body, charset, uri) -> content[0] = extract(body, charset, uri));
+                result = toFetchResult(response, content[0]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = FetchResult.failed();
+            } catch (Exception e) {
+                log.debug("url: {} {}", url, e.getMessage());
+                result = FetchResult.failed();
+            } finally {
+                hostScheduler.release(result.getCode(), System.currentTimeMillis() - startTime,
+                        response == null ? 0 : parseRetryAfter(response.getRetryAfter()));
+            }
+            if (result.getCode() != 429 && result.getCode() != 503) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private Map<String, String> getConditionalHeaders(Page storedPage) {
+        Map<String, String> headers = new HashMap<>();
+        if (storedPage != null && storedPage.getEtag() != null) {
+            headers.put("If-None-Match", storedPage.getEtag());
+        }
+        if (storedPage != null && storedPage.getLastModified() != null) {
+            headers.put("If-Modified-Since", storedPage.getLastModified());
+        }
+        return headers;
+    }
+
+    private FetchResult toFetchResult(HttpFetchResponse response, PageContent content) {
+        int code = response.getCode();
+        if (code >= 200 && code < 300) {
+            if (content == null) {
+                return FetchResult.failed();
+            }
+            return new FetchResult(code, content, response.getEtag(), response.getLastModified());
+        }
+        return new FetchResult(code, null, response.getEtag(), response.getLastModified());
+    }
+
+    /**
+     * Извлечение заголовка, текста и ссылок: потоковым разбором или через Document Jsoup
+     */
+    private PageContent extract(InputStream body, String charset, URI uri) throws IOException {
+        if (!crawlerSettings.isStreamingParse()) {
+            Document document = Jsoup.parse(body, charset, uri.toString());
+            List<String> links = document.select("a[href]").stream()
+                    .map(link -> link.attr("abs:href"))
+                    .collect(Collectors.toList());
+            Element canonical = document.selectFirst("link[rel=canonical][href]");
+            String canonicalUrl = canonical == null ? null : canonical.attr("abs:href");
+            return new PageContent(document.title(), document.body().text(), links, canonicalUrl);
+        }
+        BufferedInputStream in = new BufferedInputStream(body);
+        Charset detected = charset != null ? Charset.forName(charset) : detectCharset(in);
+        return StreamingHtmlExtractor.extract(new InputStreamReader(in, detected), uri.toString());
+    }
+
+    /**
+     * Кодировка из meta в начале страницы, по умолчанию UTF-8
+     */
+    private static Charset detectCharset(BufferedInputStream in) throws IOException {
+        in.mark(CHARSET_SNIFF_SIZE);
+        byte[] head = in.readNBytes(CHARSET_SNIFF_SIZE);
+        in.reset();
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            in.skip(3);
+            return StandardCharsets.UTF_8;
+        }
+        Matcher matcher = META_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+        if (matcher.find() && Charset.isSupported(matcher.group(1))) {
+            return Charset.forName(matcher.group(1));
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Пауза из заголовка Retry-After (только в секундах)
+     */
+    private static long parseRetryAfter(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Статистика запросов к хосту
+     *
+     * @param url - ссылка на любую страницу хоста
+     */
+    public HttpFetchClient.HostStats getStats(String url) {
+        return httpFetchClient.getStats(url);
+    }
+}
@@ -1,189 +1,274 @@
 package searchengine.parsing.sitemapping;
 
+import com.google.common.hash.Hashing;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.HttpStatusException;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import searchengine.model.Page;;
-import searchengine.parsing.ParseLemma;
-import searchengine.repository.PageRepository;
-
-import java.io.IOException;
+import searchengine.index.NearDuplicateIndex;
+import searchengine.index.SimHash;
+import searchengine.model.Page;
+import searchengine.parsing.IndexingPipeline;
+
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RecursiveTask;
 
 import static searchengine.parsing.sitemapping.Utils.*;
 
 @Slf4j
 @Getter
-@Setter
-@NoArgsConstructor
 public class ParsePageTask extends RecursiveTask<Set<String>> {
-    private ParseLemma parseLemma;
-    private PageRepository pageRepository;
+    private final CrawlSession session;   // сессия обхода сайта
+    private final String url;             // ссылка
+    private final int depth;              // глубина от главной страницы (режим обхода priority)
 
-    public ParsePageTask(ParseLemma parseLemma, PageRepository pageRepository) {
-        this.parseLemma = parseLemma;
-        this.pageRepository = pageRepository;
+    public ParsePageTask(CrawlSession session, String url) {
+        this(session, url, 0);
     }
 
-    private int siteId;             // Id сайта
-    private String url;             // ссылка
-    private String domain;          // домен
-    private ParsePageTask parent;   // родитель
-
-    private static ConcurrentHashMap<String, ParsePageTask> uniqueLinks = new ConcurrentHashMap<>();
+    public ParsePageTask(CrawlSession session, String url, int depth) {
+        this.session = session;
+        this.url = url;
+        this.depth = depth;
+    }
 
     /**
      * Возвращает список уникальных ссылок для сайта
      */
     @Override
     protected Set<String> compute() {
-        Integer statusCode = 200;
-        Integer countErrorPages = 0;
-
         Set<String> listOfUrls = new HashSet<>();
         List<ParsePageTask> tasks = new ArrayList<>();
 
-        Document doc = getDocumentByUrl(url, statusCode);
-        if (doc == null) {
-            return listOfUrls;
+        for (String checkingUrl : processPage()) {
+            listOfUrls.add(checkingUrl);
+
+            ParsePageTask newParsePageTask = prepareNewPage(checkingUrl);
+
+            newParsePageTask.fork();
+            tasks.add(newParsePageTask);
+        }
+
+        tasks.forEach((task) -> listOfUrls.addAll(task.join()));
+        return listOfUrls;
+    }
+
+    /**
+     * Загружает и сохраняет страницу, передаёт её на лемматизацию.
+     * При повторной индексации ({@link CrawlSession#isIncremental()}) на лемматизацию
+     * передаются только новые и изменившиеся страницы.
+     *
+     * @return новые (ещё не встречавшиеся) ссылки со страницы
+     */
+    public List<String> processPage() {
+        List<String> newUrls = new ArrayList<>();
+        Page storedPage = session.isIncremental()
+                ? session.getPageRepository().findBySiteIdAndPath(session.getSiteId(), getPath())
+                : null;
+        FetchResult result = session.getPageFetcher().fetch(url, storedPage);
+        if (result.isNotModified()) {
+            session.getUnchangedPages().incrementAndGet();
+            return newUrls;
         }
-        if (uniqueLinks.containsKey(url)) {
-            savePage(doc, statusCode);
-            printMessageAboutPages(statusCode, countErrorPages);
+        PageContent content = result.getContent();
+        if (content == null) {
+            if (storedPage != null && result.isGone()) {
+                removePage(storedPage);
+            }
+            if (result.getCode() > 0) {
+                printMessageAboutPages(result.getCode());
+            }
+            return newUrls;
         }
 
-        Elements elements = doc.select("a[href~=^/?([\\w\\d/-]+)?]");
-        for (Element link : elements) {
-            String checkingUrl = link.attr("abs:href").replace("//www.", "//");
-            if (isValidUrl(checkingUrl)) {
-                listOfUrls.add(checkingUrl);
+        String pagePath = resolveCanonicalPath(content);
+        if (pagePath == null) {
+            session.getCanonicalDuplicates().incrementAndGet();
+        } else {
+            storePage(storedPage, result, pagePath);
+        }
+        printMessageAboutPages(result.getCode());
 
-                ParsePageTask newParsePageTask = prepareNewPage(checkingUrl);
+        CrawlFrontier frontier = session.getFrontier();
+        if (frontier != null && !frontier.isWithinDepth(depth + 1)) {
+            // ссылки глубже допустимого не отмечаются посещёнными и не пишутся в файл ссылок
+            return newUrls;
+        }
+        for (String link : content.getLinks()) {
+            String checkingUrl = session.normalizeLink(link);
+            if (checkingUrl == null) {
+                continue;
+            }
+            boolean isNew = frontier != null
+                    ? session.markVisited(checkingUrl, depth + 1)
+                    : session.markVisited(checkingUrl);
+            if (isNew) {
+                newUrls.add(checkingUrl);
+            } else if (frontier != null) {
+                frontier.addInlink(checkingUrl);
+            }
+        }
+        return newUrls;
+    }
 
-                newParsePageTask.fork();
-                tasks.add(newParsePageTask);
+    private void storePage(Page storedPage, FetchResult result, String pagePath) {
+        IndexingPipeline pipeline = session.getPipeline();
+        if (storedPage == null) {
+            Long simhash = fingerprint(result);
+            if (simhash != null && session.getDuplicateIndex().findOrAdd(simhash, pagePath) != null) {
+                return;
             }
+            Page page = savePage(result, pagePath, simhash);
+            if (page != null && pipeline != null && page.getCode() == 200) {
+                pipeline.submit(page);
+            }
+        } else if (updatePage(storedPage, result)) {
+            if (pipeline != null && storedPage.getCode() == 200) {
+                pipeline.submitChanged(storedPage);
+            }
+        } else {
+            session.getUnchangedPages().incrementAndGet();
         }
+    }
 
-        tasks.forEach((task) -> listOfUrls.addAll(task.join()));
-        return listOfUrls;
+    /**
+     * Удаляет сохранённую страницу, которая больше не отдаётся сайтом:
+     * страница, её индексы и позиции удаляются при записи пакета, частоты лемм уменьшаются
+     */
+    private void removePage(Page storedPage) {
+        IndexingPipeline pipeline = session.getPipeline();
+        if (pipeline != null) {
+            pipeline.submitRemoved(storedPage);
+            session.getRemovedPages().incrementAndGet();
+        }
     }
 
     /**
-     * Получить Document по ссылке
+     * Отпечаток SimHash загруженной страницы
      *
-     * @param url ссылка на страницу
-     * @param statusCode код ошибки
-     * @return Document
+     * @return отпечаток или null, если поиск дубликатов выключен, страница с ошибкой или слишком короткая
      */
-    public Document getDocumentByUrl(String url, Integer statusCode) {
-        Document doc = null;
-        try {
-            doc = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                    .referrer("http://www.google.com")
-                    .get();
-        } catch (HttpStatusException e) {
-            statusCode = e.getStatusCode();
-        } catch (IOException ex) {
+    private Long fingerprint(FetchResult result) {
+        NearDuplicateIndex duplicateIndex = session.getDuplicateIndex();
+        if (duplicateIndex == null || result.getCode() != 200) {
             return null;
         }
-        return doc;
+        long simhash = duplicateIndex.fingerprint(result.getContent().getText());
+        return simhash == SimHash.NONE ? null : simhash;
+    }
+
+    /**
+     * Путь, под которым сохраняется страница. Если страница указала каноническую ссылку
+     * на другую страницу сайта, сохраняется под путём канонической ссылки,
+     * а если та уже загружена - страница считается дубликатом.
+     * При повторной индексации путь сохранённой страницы не меняется.
+     *
+     * @return путь или null для дубликата
+     */
+    private String resolveCanonicalPath(PageContent content) {
+        String canonicalUrl = content.getCanonicalUrl();
+        if (canonicalUrl == null || !session.getUrlNormalizer().isHonorCanonical()) {
+            return getPath();
+        }
+        canonicalUrl = session.normalizeLink(canonicalUrl);
+        if (canonicalUrl == null || session.isIncremental() || getPath(canonicalUrl).equals(getPath())) {
+            return getPath();
+        }
+        return session.markVisited(canonicalUrl) ? getPath(canonicalUrl) : null;
     }
 
     /**
      * Сохраняет новую страницу
      *
-     * @param doc документ(страница) для сохранения
-     * @param statusCode - код состояния
+     * @param result - результат загрузки страницы
+     * @return сохранённая страница или null, если страница не загружена
      */
-    public Page savePage(Document doc, Integer statusCode) {
-        if (doc == null) {
+    public Page savePage(FetchResult result) {
+        return savePage(result, getPath(), null);
+    }
+
+    private Page savePage(FetchResult result, String pagePath, Long simhash) {
+        PageContent content = result.getContent();
+        if (content == null) {
             log.warn("Failed to save page");
             return null;
         }
-        String content = "";
-        try {
-            content = doc.body().text();
-        } catch (Exception e) {
-            log.warn("Ошибка при получении контекста страницы: {}", url);
-        }
+        Page page = new Page(session.getSiteId(), pagePath, result.getCode(), content.getText(), content.getTitle());
+        page.setEtag(result.getEtag());
+        page.setLastModified(result.getLastModified());
+        page.setContentHash(hashContent(content.getText()));
+        page.setSimhash(simhash);
+
+        session.getPageRepository().save(page);
 
-        String title = "";
-        try {
-            title = doc.title();
-        } catch (Exception e) {
-            log.warn("Ошибка при получении заголовка страницы: {}", url);
+        return page;
+    }
+
+    /**
+     * Обновляет сохранённую страницу
+     *
+     * @param page   - сохранённая страница
+     * @param result - результат загрузки страницы
+     * @return true если текст страницы изменился
+     */
+    private boolean updatePage(Page page, FetchResult result) {
+        PageContent content = result.getContent();
+        long contentHash = hashContent(content.getText());
+        boolean isChanged = page.getContentHash() == null || page.getContentHash() != contentHash
+                || page.getCode() != result.getCode();
+
+        page.setEtag(result.getEtag());
+        page.setLastModified(result.getLastModified());
+        if (isChanged) {
+            page.setCode(result.getCode());
+            page.setContent(content.getText());
+            page.setTitle(content.getTitle());
+            page.setContentHash(contentHash);
+            page.setSimhash(fingerprint(result));
         }
+        session.getPageRepository().save(page);
+        return isChanged;
+    }
+
+    private String getPath() {
+        return getPath(url);
+    }
 
-        String path = url.substring(domain.length());
+    private String getPath(String pageUrl) {
+        String path = pageUrl.substring(session.getDomain().length());
         if (!path.endsWith("/")) {
             path = path + "/";
         }
-        Page page = new Page(siteId, path, statusCode, content, title);
-
-        pageRepository.save(page);
+        return path;
+    }
 
-        return page;
+    private static long hashContent(String content) {
+        return Hashing.murmur3_128().hashString(content, StandardCharsets.UTF_8).asLong();
     }
 
-    private void printMessageAboutPages(Integer statusCode, Integer countErrorPages) {
+    private void printMessageAboutPages(int statusCode) {
         if (statusCode != 200) {
-            countErrorPages++;
+            session.getErrorPages().incrementAndGet();
             log.warn("url: {} {}", url, statusCode);
         }
+        int countErrorPages = session.getErrorPages().get();
         StringBuilder builder = new StringBuilder();
-        builder.append("Number of pages found: ").append(ANSI_BLUE).append(uniqueLinks.size()).append(ANSI_RESET);
+        builder.append("Number of pages found: ").append(ANSI_BLUE).append(session.getVisitedCount()).append(ANSI_RESET);
         if (countErrorPages > 0) {
             builder.append(" Pages with errors ").append(ANSI_RED).append(countErrorPages).append(ANSI_RESET);
         }
         System.out.print(builder + "\r");
     }
 
-    private ParsePageTask prepareNewPage(String checkingUrl) {
-        ParsePageTask newParse = new ParsePageTask(parseLemma, pageRepository);
-        newParse.setUrl(checkingUrl);
-        newParse.setParent(this);
-        newParse.setDomain(domain);
-        newParse.setSiteId(siteId);
-        return newParse;
-    }
-
-    private boolean isValidUrl(String checkingUrl) {
-        if (checkingUrl.startsWith(domain)) {
-            if (checkingUrl.isEmpty() ||
-                    checkingUrl.contains("#") ||
-                    checkingUrl.contains(".jpg") ||
-                    checkingUrl.contains(".png")) {
-                return false;
-            }
-            return !isExistUrlInUniqueLinks(checkingUrl);
-        }
-        return false;
-    }
-
-    private boolean isExistUrlInUniqueLinks(String url) {
-        boolean isExist = uniqueLinks.containsKey(url);
-        if (!isExist) {
-            uniqueLinks.put(url, this);
-        }
-        return isExist;
-    }
-
-    public static void clearUniqueLinks() {
-        uniqueLinks.clear();
+    /**
+     * Задача для ссылки с этой страницы
+     *
+     * @param checkingUrl - ссылка
+     * @return новая задача в той же сессии обхода
+     */
+    public ParsePageTask prepareNewPage(String checkingUrl) {
+        return new ParsePageTask(session, checkingUrl);
     }
 }
-
-
@@ -0,0 +1,111 @@
+package searchengine.parsing.sitemapping;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.PolitenessSettings;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Планировщик запросов по хостам: для каждого хоста свой {@link HostScheduler}.
+ * При первом обращении к хосту читается robots.txt, из него берётся Crawl-delay.
+ * Загрузка robots.txt блокирует только потоки, обращающиеся к тому же хосту.
+ * Планировщики простаивающих хостов и прочитанные robots.txt со временем удаляются,
+ * поэтому скорость и правила одного обхода не переходят во все последующие.
+ */
+@Slf4j
+@Component
+public class PolitenessScheduler {
+    private final PolitenessSettings politenessSettings;
+    private final CrawlerSettings crawlerSettings;
+    private final HttpFetchClient httpFetchClient;
+    private final LoadingCache<String, HostScheduler> hosts;
+    private final LoadingCache<String, RobotsTxt> robots;
+
+    public PolitenessScheduler(PolitenessSettings politenessSettings, CrawlerSettings crawlerSettings,
+                               HttpFetchClient httpFetchClient) {
+        this.politenessSettings = politenessSettings;
+        this.crawlerSettings = crawlerSettings;
+        this.httpFetchClient = httpFetchClient;
+        this.hosts = CacheBuilder.newBuilder()
+                .expireAfterAccess(politenessSettings.getHostIdleTimeout())
+                .build(CacheLoader.from(this::newScheduler));
+        this.robots = CacheBuilder.newBuilder()
+                .expireAfterWrite(politenessSettings.getRobotsTtl())
+                .build(CacheLoader.from(this::readRobotsTxt));
+    }
+
+    public PolitenessSettings getSettings() {
+        return politenessSettings;
+    }
+
+    /**
+     * Планировщик хоста ссылки
+     *
+     * @param url - ссылка
+     * @return планировщик хоста
+     */
+    public HostScheduler forUrl(String url) {
+        return hosts.getUnchecked(originOf(url));
+    }
+
+    /**
+     * Правила robots.txt хоста ссылки, загружаются один раз за {@link PolitenessSettings#getRobotsTtl()}
+     *
+     * @param url - ссылка
+     * @return правила, пустые если robots.txt нет
+     */
+    public RobotsTxt getRobotsTxt(String url) {
+        String origin = originOf(url);
+        if (origin.isEmpty()) {
+            return RobotsTxt.parse("");
+        }
+        return robots.getUnchecked(origin);
+    }
+
+    private HostScheduler newScheduler(String origin) {
+        double crawlDelay = 0;
+        if (!origin.isEmpty() && politenessSettings.isRespectCrawlDelay()) {
+            crawlDelay = getRobotsTxt(origin).getCrawlDelay();
+        }
+        if (crawlDelay > 0) {
+            log.info("{} Crawl-delay: {} s", origin, crawlDelay);
+        }
+        return new HostScheduler(origin, politenessSettings, crawlerSettings.getMaxConnectionsPerHost(), crawlDelay);
+    }
+
+    private RobotsTxt readRobotsTxt(String origin) {
+        try {
+            HttpFetchResponse response = httpFetchClient.getFile(origin + "/robots.txt");
+            if (response.getCode() == 200) {
+                return RobotsTxt.parse(response.getText());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("robots.txt {}: {}", origin, e.getMessage());
+        }
+        return RobotsTxt.parse("");
+    }
+
+    /**
+     * Протокол и хост ссылки, пустая строка если ссылка некорректна
+     */
+    private static String originOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return "";
+            }
+            String port = uri.getPort() == -1 ? "" : ":" + uri.getPort();
+            return (uri.getScheme() + "://" + uri.getHost() + port).toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
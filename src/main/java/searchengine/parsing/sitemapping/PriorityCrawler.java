@@ -0,0 +1,55 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обход сайта рабочими потоками, берущими ссылки из {@link CrawlFrontier} по приоритету,
+ * вместо рекурсивных задач. Новые ссылки страницы добавляются в очередь с глубиной на единицу больше.
+ */
+@Slf4j
+public class PriorityCrawler {
+    private final CrawlFrontier frontier;
+    private final int workers;
+    private final ExecutorService executor;
+
+    public PriorityCrawler(CrawlFrontier frontier, int workers) {
+        this.frontier = frontier;
+        this.workers = workers;
+        this.executor = ExecutorCrawler.newExecutor(workers);
+    }
+
+    /**
+     * Обход сайта, возвращается после обработки всех ссылок очереди или исчерпания ограничений
+     *
+     * @param session - сессия обхода сайта
+     */
+    public void crawl(CrawlSession session) throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> work(session));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private void work(CrawlSession session) {
+        try {
+            CrawlFrontier.Entry entry;
+            while (!session.isCancelled() && (entry = frontier.poll()) != null) {
+                try {
+                    for (String url : new ParsePageTask(session, entry.getUrl(), entry.getDepth()).processPage()) {
+                        frontier.add(url, entry.getDepth() + 1, null);
+                    }
+                } catch (Exception e) {
+                    log.warn("Ошибка обработки страницы {}: {}", entry.getUrl(), e.getMessage());
+                } finally {
+                    frontier.complete();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
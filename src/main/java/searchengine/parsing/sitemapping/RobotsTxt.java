@@ -0,0 +1,69 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила robots.txt для всех роботов (User-agent: *) и ссылки на карты сайта
+ */
+@Getter
+public class RobotsTxt {
+    /**
+     * Crawl-delay в секундах, 0 - не задан
+     */
+    private double crawlDelay;
+    /**
+     * Ссылки Sitemap (не зависят от User-agent)
+     */
+    private final List<String> sitemaps = new ArrayList<>();
+
+    /**
+     * Разбор текста robots.txt
+     *
+     * @param text - содержимое robots.txt
+     * @return правила
+     */
+    public static RobotsTxt parse(String text) {
+        RobotsTxt robotsTxt = new RobotsTxt();
+        boolean isForAll = false;
+        boolean isGroupStarted = false;
+        for (String rawLine : text.split("\r?\n|\r")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (field.equals("sitemap")) {
+                if (!value.isEmpty()) {
+                    robotsTxt.sitemaps.add(value);
+                }
+            } else if (field.equals("user-agent")) {
+                if (isGroupStarted) {
+                    isForAll = false;
+                    isGroupStarted = false;
+                }
+                isForAll |= value.equals("*");
+            } else {
+                isGroupStarted = true;
+                if (isForAll && field.equals("crawl-delay")) {
+                    robotsTxt.crawlDelay = parseDelay(value);
+                }
+            }
+        }
+        return robotsTxt;
+    }
+
+    private static double parseDelay(String value) {
+        try {
+            return Math.max(0, Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
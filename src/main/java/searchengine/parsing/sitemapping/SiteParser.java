@@ -1,45 +1,65 @@
 package searchengine.parsing.sitemapping;
 
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.FrontierSettings;
 import searchengine.config.Messages;
+import searchengine.config.PipelineSettings;
+import searchengine.index.NearDuplicateIndex;
 import searchengine.model.Page;
 import searchengine.model.SiteE;
 import searchengine.model.Status;
+import searchengine.parsing.DuplicateDetector;
+import searchengine.parsing.IndexingPipeline;
+import searchengine.parsing.LemmaBatchWriter;
 import searchengine.parsing.ParseLemma;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
+/**
+ * Обход сайтов. Состояние обхода каждого сайта хранится в отдельной {@link CrawlSession},
+ * поэтому несколько сайтов индексируются параллельно.
+ */
 @Slf4j
 @Component
-@Getter
-@Setter
 @RequiredArgsConstructor
 public class SiteParser {
 
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
     private final ParseLemma parseLemma;
+    private final LemmaBatchWriter lemmaBatchWriter;
+    private final PipelineSettings pipelineSettings;
+    private final CrawlerSettings crawlerSettings;
+    private final CrawlFrontierStore frontierStore;
+    private final PageFetcher pageFetcher;
+    private final SitemapReader sitemapReader;
+    private final UrlNormalizer urlNormalizer;
+    private final DuplicateDetector duplicateDetector;
+    private final FrontierSettings frontierSettings;
 
-    private int siteId;
-    private String domain;
-    private String url;
-
-    public void initSiteParser(int siteId, String domain, String url) {
-        this.siteId = siteId;
-        this.domain = domain;
-        this.url = url;
+    private enum CrawlStart {
+        NEW, RESUME, REFRESH
     }
 
-    private ParsePageTask parsePageTask;
+    private final Map<Integer, CrawlSession> activeSessions = new ConcurrentHashMap<>();
 
     private static AtomicBoolean isCancel = new AtomicBoolean(false);
     public static void setCancel(boolean b) {
@@ -49,94 +69,329 @@ public class SiteParser {
         return isCancel.get();
     }
 
+    /**
+     * Остановка обхода всех сайтов
+     */
     public void forceStop() {
         setCancel(true);
-        pool.shutdownNow();
+        activeSessions.values().forEach(CrawlSession::cancel);
     }
 
     private static final int PARALLELISM = 120;
-    private ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+    /**
+     * Кол-во страниц, загружаемых из БД за раз для лемматизации при продолжении обхода
+     */
+    private static final int RESUME_PAGE_BATCH = 100;
 
     /**
-     * Парсинг страниц
+     * Парсинг страниц сайта: загрузка страниц в режиме {@link CrawlerSettings#getMode()},
+     * лемматизация в {@link IndexingPipeline}
+     *
+     * @param siteId - id сайта
+     * @param domain - протокол и домен сайта
+     * @param url    - ссылка на главную страницу
      */
-    public void getLinks() {
-        long delayInMilliseconds = 2;
-        pool = new ForkJoinPool(PARALLELISM);
-        parsePageTask = preparePage();
-        pool.execute(parsePageTask);
+    public void parseSite(int siteId, String domain, String url) {
+        crawl(siteId, domain, url, CrawlStart.NEW);
+    }
 
-        while (!parsePageTask.isDone() && !isCancel()) {
-            try {
-                Thread.sleep(delayInMilliseconds);
-            } catch (InterruptedException ignored) {
-            }
-        }
+    /**
+     * Продолжение прерванного обхода сайта: уже сохранённые страницы пропускаются,
+     * обход начинается со ссылок из {@link CrawlFrontierStore}, которые ещё не загружены
+     *
+     * @param siteId - id сайта
+     * @param domain - протокол и домен сайта
+     * @param url    - ссылка на главную страницу
+     */
+    public void resumeSite(int siteId, String domain, String url) {
+        crawl(siteId, domain, url, CrawlStart.RESUME);
+    }
+
+    /**
+     * Повторная индексация сайта без удаления страниц и лемм: сохранённые страницы
+     * загружаются условными запросами, леммы пересчитываются только для изменившихся
+     *
+     * @param siteId - id сайта
+     * @param domain - протокол и домен сайта
+     * @param url    - ссылка на главную страницу
+     */
+    public void refreshSite(int siteId, String domain, String url) {
+        crawl(siteId, domain, url, CrawlStart.REFRESH);
+    }
+
+    private void crawl(int siteId, String domain, String url, CrawlStart start) {
+        Timestamp crawlStartTime = Utils.setNow();
+        IndexingPipeline pipeline = new IndexingPipeline(parseLemma, pipelineSettings, siteId);
+        CrawlSession session = new CrawlSession(siteId, domain, url, pageRepository, pageFetcher, urlNormalizer,
+                pipeline, start == CrawlStart.REFRESH);
+        activeSessions.put(siteId, session);
+        pipeline.start();
+        session.setDuplicateIndex(duplicateDetector.open(siteId, start != CrawlStart.NEW));
+        boolean isCompleted = false;
 
-        if (isCancel()) {
-            pool.shutdownNow();
-            forceStop();
-            log.info("Отмена индексации... ");
-        } else {
-            pool.shutdown();
-        }
         try {
-            parsePageTask.join();
-            saveSite();
+            List<String> startUrls = switch (start) {
+                case NEW -> prepareStart(session);
+                case RESUME -> prepareResume(session);
+                case REFRESH -> prepareRefresh(session);
+            };
+            List<ParsePageTask> startTasks = startUrls.stream()
+                    .map(startUrl -> new ParsePageTask(session, startUrl))
+                    .collect(Collectors.toList());
+
+            switch (crawlerSettings.getMode()) {
+                case PRIORITY -> crawlWithFrontier(session, startUrls);
+                case VIRTUAL_THREADS -> crawlWithExecutor(session, startTasks);
+                default -> crawlWithForkJoin(session, startTasks);
+            }
+
+            boolean isFinished = false;
+            if (session.isCancelled()) {
+                session.cancel();
+                log.info("Отмена индексации... ");
+            } else {
+                pipeline.finish();
+                isFinished = true;
+            }
+            // при ошибке записи индекса файл ссылок сохраняется для продолжения обхода
+            // продолженный обход начат раньше, время его начала неизвестно
+            isCompleted = saveSite(session, start == CrawlStart.RESUME ? null : crawlStartTime) && isFinished;
         } catch (Exception e) {
             log.error("parsePage.join() {}", e.getMessage());
+        } finally {
+            activeSessions.remove(siteId);
+            duplicateDetector.close(siteId);
+            session.close();
+            if (isCompleted) {
+                frontierStore.delete(siteId);
+            }
+        }
+    }
+
+    /**
+     * Новый обход с главной страницы
+     */
+    private List<String> prepareStart(CrawlSession session) {
+        List<String> startUrls = openFrontier(session);
+        for (String entryUrl : readSitemaps(session).keySet()) {
+            if (session.markVisited(entryUrl)) {
+                startUrls.add(entryUrl);
+            }
+        }
+        return startUrls;
+    }
+
+    /**
+     * Повторный обход: загружаются главная страница, ссылки из карт сайта и все сохранённые страницы.
+     * Сохранённые страницы, которые по lastmod карты сайта не менялись с начала прошлого полного обхода,
+     * пропускаются.
+     * Новые страницы находятся по картам сайта и по ссылкам с изменившихся страниц.
+     */
+    private List<String> prepareRefresh(CrawlSession session) {
+        List<String> startUrls = openFrontier(session);
+        Set<String> storedUrls = new LinkedHashSet<>();
+        for (String path : pageRepository.findPathsBySiteId(session.getSiteId())) {
+            storedUrls.add(stripTrailingSlash(session.getDomain() + path));
+        }
+        Instant lastIndexed = siteRepository.findById(session.getSiteId())
+                .map(SiteE::getLastCrawlTime)
+                .map(Timestamp::toInstant)
+                .orElse(Instant.EPOCH);
+
+        int skipped = 0;
+        for (Map.Entry<String, SitemapEntry> sitemapEntry : readSitemaps(session).entrySet()) {
+            String entryUrl = sitemapEntry.getKey();
+            SitemapEntry entry = sitemapEntry.getValue();
+            String bareUrl = stripTrailingSlash(entryUrl);
+            boolean isUnchanged = storedUrls.contains(bareUrl)
+                    && entry.getLastModified() != null && entry.getLastModified().isBefore(lastIndexed);
+            if (isUnchanged) {
+                session.seedVisited(entryUrl);
+                skipped++;
+            } else if (session.markVisited(entryUrl)) {
+                startUrls.add(entryUrl);
+            }
+        }
+        for (String bareUrl : storedUrls) {
+            String pageUrl = bareUrl + "/";
+            if (session.markVisited(pageUrl)) {
+                startUrls.add(pageUrl);
+            }
         }
-        parsePageTask = null;
+        session.getUnchangedPages().addAndGet(skipped);
+        log.info("Refresh site {}: stored pages {}, unchanged by sitemap {}, urls to load {}",
+                session.getSiteId(), storedUrls.size(), skipped, startUrls.size());
+        return startUrls;
     }
 
     /**
-     * Установка значений данных для парсинга страницы
+     * Новый файл ссылок сайта, первая ссылка - главная страница
+     */
+    private List<String> openFrontier(CrawlSession session) {
+        frontierStore.delete(session.getSiteId());
+        session.setFrontierLog(frontierStore.open(session.getSiteId()));
+        session.markVisited(session.getUrl());
+        List<String> startUrls = new ArrayList<>();
+        startUrls.add(session.getUrl());
+        return startUrls;
+    }
+
+    /**
+     * Ссылки из карт сайта в порядке {@link SitemapReader}, ключ - каноническая ссылка
+     */
+    private Map<String, SitemapEntry> readSitemaps(CrawlSession session) {
+        Map<String, SitemapEntry> entries = session.getSitemapEntries();
+        if (sitemapReader.isEnabled()) {
+            for (SitemapEntry entry : sitemapReader.read(session.getUrl())) {
+                String entryUrl = session.normalizeLink(entry.getUrl());
+                if (entryUrl != null) {
+                    entries.putIfAbsent(entryUrl, entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * Восстановление посещённых ссылок по сохранённым страницам и файлу ссылок,
+     * повторная лемматизация страниц, не попавших в индекс
      *
-     * @return обьект ParsePageTask
+     * @return ссылки, найденные, но ещё не загруженные
      */
-    private ParsePageTask preparePage() {
-        parsePageTask = new ParsePageTask(parseLemma, pageRepository);
+    private List<String> prepareResume(CrawlSession session) {
+        int siteId = session.getSiteId();
+        for (String path : pageRepository.findPathsBySiteId(siteId)) {
+            session.seedVisited(session.getDomain() + path);
+        }
+        List<String> startUrls = new ArrayList<>();
+        for (Map.Entry<String, Integer> discovered : frontierStore.load(siteId).entrySet()) {
+            String discoveredUrl = discovered.getKey();
+            if (!session.isVisited(discoveredUrl)) {
+                startUrls.add(discoveredUrl);
+                if (discovered.getValue() != FrontierLog.UNKNOWN_DEPTH) {
+                    session.getStartDepths().put(discoveredUrl, discovered.getValue());
+                }
+            }
+            session.seedVisited(discoveredUrl);
+        }
+        session.setFrontierLog(frontierStore.open(siteId));
 
-        parsePageTask.setUrl(url);
-        parsePageTask.setDomain(domain);
-        parsePageTask.setParent(null);
-        parsePageTask.setSiteId(siteId);
-        return parsePageTask;
+        // тексты страниц загружаются порциями, очередь конвейера ограничена и задерживает следующую порцию
+        List<Integer> notIndexedIds = pageRepository.findNotIndexedIdsBySiteId(siteId);
+        for (int from = 0; from < notIndexedIds.size() && !session.isCancelled(); from += RESUME_PAGE_BATCH) {
+            List<Integer> pageIds =
+                    notIndexedIds.subList(from, Math.min(from + RESUME_PAGE_BATCH, notIndexedIds.size()));
+            pageRepository.findByPageIdIn(pageIds).forEach(session.getPipeline()::submit);
+        }
+        log.info("Resume site {}: stored pages {}, pages to index {}, urls to load {}",
+                siteId, session.getVisitedCount() - startUrls.size(), notIndexedIds.size(), startUrls.size());
+        return startUrls;
     }
 
     /**
-     * Сохраняет сайт в БД
+     * Рекурсивный обход в ForkJoinPool. Завершение корневой задачи ожидается порциями по 100 мс,
+     * между ними проверяется отмена: общий флаг остановки индексации не будит ожидающий поток.
+     * При отмене или ошибке обхода задачи отменяются, пул останавливается в любом случае.
      */
-    private void saveSite() {
-        SiteE siteE = siteRepository.findById(siteId).orElse(null);
-        if (siteE == null) {
-            log.warn("Сайт с ID: {} не найден", siteE);
-            return;
+    private void crawlWithForkJoin(CrawlSession session, List<ParsePageTask> startTasks) throws Exception {
+        long waitInMilliseconds = 100;
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        session.setPool(pool);
+        ForkJoinTask<?> rootTask = startTasks.size() == 1
+                ? startTasks.get(0)
+                : ForkJoinTask.adapt(() -> {
+                    ForkJoinTask.invokeAll(startTasks);
+                });
+        boolean isDone = false;
+        try {
+            pool.execute(rootTask);
+            while (!isDone && !session.isCancelled()) {
+                try {
+                    rootTask.get(waitInMilliseconds, TimeUnit.MILLISECONDS);
+                    isDone = true;
+                } catch (TimeoutException ignored) {
+                }
+            }
+        } finally {
+            if (isDone) {
+                pool.shutdown();
+            } else {
+                rootTask.cancel(true);
+                pool.shutdownNow();
+            }
         }
-        siteE.setStatus(isCancel() ? Status.FAILED : Status.INDEXING);
-        siteE.setStatusTime(Utils.setNow());
+    }
 
-        getLemmasForAllPages(siteE);
+    /**
+     * Обход в порядке приоритета ссылок: главная страница - глубина 0, ссылки продолженного обхода -
+     * глубина из файла ссылок, остальные начальные ссылки - 1
+     */
+    private void crawlWithFrontier(CrawlSession session, List<String> startUrls) throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(frontierSettings);
+        Map<String, SitemapEntry> sitemapEntries = session.getSitemapEntries();
+        Map<String, Integer> startDepths = session.getStartDepths();
+        for (String startUrl : startUrls) {
+            int depth = startDepths.getOrDefault(startUrl, startUrl.equals(session.getUrl()) ? 0 : 1);
+            frontier.add(startUrl, depth, sitemapEntries.get(startUrl));
+        }
+        sitemapEntries.clear();
+        startDepths.clear();
+        session.setFrontier(frontier);
+        new PriorityCrawler(frontier, crawlerSettings.getMaxConnectionsPerHost()).crawl(session);
+        if (frontier.getStopReason() != null) {
+            log.info("siteId: {} crawl limit reached ({}), loaded {}, not loaded {}", session.getSiteId(),
+                    frontier.getStopReason(), frontier.getPolledCount(), frontier.size());
+        }
+    }
 
-        siteE.setStatus(isCancel() ? Status.FAILED : Status.INDEXED);
-        siteE.setLastError(isCancel() ? Messages.INDEXING_STOPPED_BY_USER : "");
-        siteE.setStatusTime(Utils.setNow());
-        siteRepository.save(siteE);
-        log.info("===>>> site '{}' saved", siteE.getName());
+    /**
+     * Обход задачами в виртуальных потоках с ограничением запросов к хосту
+     */
+    private void crawlWithExecutor(CrawlSession session, List<ParsePageTask> startTasks) throws InterruptedException {
+        ExecutorCrawler executorCrawler = new ExecutorCrawler(crawlerSettings.getMaxConnectionsPerHost());
+        session.setExecutorCrawler(executorCrawler);
+        executorCrawler.crawl(startTasks);
     }
 
     /**
-     * Проход по всем страницам сайта и сохранение лемм и индексов
+     * Сохраняет сайт в БД
      *
-     * @param siteE - сущность SiteE
+     * @param crawlStartTime - время начала обхода, запоминается для завершённого обхода (null - не запоминать)
+     * @return false если часть лемм сайта не записана в БД
      */
-    public void getLemmasForAllPages(SiteE siteE) {
-        int statusCode = 200;
-        List<Page> pageList = pageRepository.findBySiteIdAndCode(siteE.getSiteId(), statusCode);
-        parseLemma.setBeginPos(pageList.get(0).getPageId());
-        parseLemma.setEndPos(pageList.get(pageList.size() - 1).getPageId());
+    private boolean saveSite(CrawlSession session, Timestamp crawlStartTime) {
+        SiteE siteE = siteRepository.findById(session.getSiteId()).orElse(null);
+        if (siteE == null) {
+            log.warn("Сайт с ID: {} не найден", session.getSiteId());
+            return false;
+        }
+        boolean isWritten = flushLemmas(session.getSiteId());
 
-        pageList.stream().takeWhile(e -> !isCancel()).forEach(this::parseSinglePage);
+        boolean isCancelled = session.isCancelled();
+        siteE.setStatus(isCancelled || !isWritten ? Status.FAILED : Status.INDEXED);
+        siteE.setLastError(isCancelled ? Messages.INDEXING_STOPPED_BY_USER
+                : isWritten ? "" : Messages.INDEX_WRITE_FAILED);
+        siteE.setStatusTime(Utils.setNow());
+        if (!isCancelled && isWritten && crawlStartTime != null) {
+            siteE.setLastCrawlTime(crawlStartTime);
+        }
+        siteRepository.save(siteE);
+        log.info("===>>> site '{}' saved, pages: {}, unchanged: {}, removed: {}, visited set: {} KB per million urls",
+                siteE.getName(), session.getVisitedCount(), session.getUnchangedPages().get(),
+                session.getRemovedPages().get(),
+                session.getVisitedMemoryPerMillion() / 1024);
+        log.info("{} {}", session.getDomain(), pageFetcher.getStats(session.getDomain()));
+        NearDuplicateIndex duplicateIndex = session.getDuplicateIndex();
+        if (duplicateIndex != null || session.getCanonicalDuplicates().get() > 0) {
+            log.info("{} duplicates: by canonical {}, near-duplicate {}", session.getDomain(),
+                    session.getCanonicalDuplicates().get(),
+                    duplicateIndex == null ? 0 : duplicateIndex.getCollapsedPages());
+        }
+        return isWritten;
     }
 
     /**
@@ -145,17 +400,22 @@ public class SiteParser {
      * @param page - страница
      */
     public void parseSinglePage(Page page) {
-        parseLemma.setCurrentPos(page.getPageId());
         if (!isCancel()) {
-            parseLemma.parsing(page);
+            int countOfLemmas = parseLemma.parsing(page);
+            log.info("Writing lemmas and indices: {} ", countOfLemmas);
         }
     }
 
     /**
-     * Сброс ссылок после выполнения работы
+     * Запись накопленных лемм и индексов в БД
+     *
+     * @param siteId - id сайта
+     * @return false если часть лемм сайта не записана из-за ошибки БД
      */
-    public void clearUniqueLinks() {
-        ParsePageTask.clearUniqueLinks();
+    public boolean flushLemmas(int siteId) {
+        lemmaBatchWriter.flush();
+        log.info("Lemma cache: {}", parseLemma.getLemmaFinder().getCacheStats());
+        return !lemmaBatchWriter.takeWriteFailure(siteId);
     }
 
     /**
@@ -166,12 +426,9 @@ public class SiteParser {
      * @return - сохранённая строаница
      */
     public Page savePage(String url, SiteE siteE, String domain) {
-        int statusCode = 200;
-        preparePage();
-        Document doc = parsePageTask.getDocumentByUrl(url, statusCode);
-        parsePageTask.setSiteId(siteE.getSiteId());
-        parsePageTask.setDomain(domain);
-        parsePageTask.setUrl(url);
-        return parsePageTask.savePage(doc, statusCode);
+        CrawlSession session = new CrawlSession(siteE.getSiteId(), domain, url, pageRepository, pageFetcher,
+                urlNormalizer, null, false);
+        ParsePageTask task = new ParsePageTask(session, url);
+        return task.savePage(pageFetcher.fetch(url, null));
     }
 }
@@ -0,0 +1,27 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Ссылка из sitemap.xml
+ */
+@Getter
+public class SitemapEntry {
+    private final String url;
+    /**
+     * Дата изменения страницы, null - не указана
+     */
+    private final Instant lastModified;
+    /**
+     * Приоритет 0.0-1.0, по умолчанию 0.5
+     */
+    private final double priority;
+
+    public SitemapEntry(String url, Instant lastModified, double priority) {
+        this.url = url;
+        this.lastModified = lastModified;
+        this.priority = priority;
+    }
+}
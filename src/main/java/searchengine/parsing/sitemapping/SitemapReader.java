@@ -0,0 +1,197 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitemapSettings;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Чтение карт сайта: ссылки Sitemap из robots.txt или /sitemap.xml, вложенные sitemapindex,
+ * файлы .gz. XML разбирается потоком (StAX), файл целиком в памяти не хранится.
+ * Ссылки возвращаются по убыванию даты изменения, затем приоритета.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitemapReader {
+    private static final double DEFAULT_PRIORITY = 0.5;
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private final HttpFetchClient httpFetchClient;
+    private final PolitenessScheduler politenessScheduler;
+    private final SitemapSettings sitemapSettings;
+
+    public boolean isEnabled() {
+        return sitemapSettings.isEnabled();
+    }
+
+    /**
+     * Ссылки из карт сайта
+     *
+     * @param siteUrl - ссылка на главную страницу сайта
+     * @return ссылки, сначала недавно изменённые
+     */
+    public List<SitemapEntry> read(String siteUrl) {
+        List<SitemapEntry> entries = new ArrayList<>();
+        Deque<String> sitemaps = new ArrayDeque<>(politenessScheduler.getRobotsTxt(siteUrl).getSitemaps());
+        if (sitemaps.isEmpty()) {
+            sitemaps.add(stripTrailingSlash(siteUrl) + "/sitemap.xml");
+        }
+        Set<String> loaded = new HashSet<>();
+        while (!sitemaps.isEmpty() && loaded.size() < sitemapSettings.getMaxSitemaps()
+                && entries.size() < sitemapSettings.getMaxUrls()) {
+            String sitemapUrl = sitemaps.poll();
+            if (loaded.add(sitemapUrl)) {
+                readSitemap(sitemapUrl, entries, sitemaps);
+            }
+        }
+        entries.sort(Comparator
+                .comparing(SitemapEntry::getLastModified, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(SitemapEntry::getPriority, Comparator.reverseOrder()));
+        log.info("{} sitemap files: {}, urls: {}", siteUrl, loaded.size(), entries.size());
+        return entries;
+    }
+
+    private void readSitemap(String sitemapUrl, List<SitemapEntry> entries, Deque<String> sitemaps) {
+        HostScheduler hostScheduler = politenessScheduler.forUrl(sitemapUrl);
+        int code = 0;
+        long startTime = System.currentTimeMillis();
+        try {
+            hostScheduler.acquire();
+            HttpFetchResponse response = httpFetchClient.getFile(sitemapUrl,
+                    (body, charset, uri) -> parse(body, entries, sitemaps));
+            code = response.getCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            log.debug("sitemap {}: {}", sitemapUrl, e.getMessage());
+        } finally {
+            hostScheduler.release(code, System.currentTimeMillis() - startTime, 0);
+        }
+    }
+
+    /**
+     * Разбор urlset или sitemapindex, файл .gz распаковывается по сигнатуре
+     */
+    private void parse(InputStream body, List<SitemapEntry> entries, Deque<String> sitemaps) throws IOException {
+        InputStream in = new BufferedInputStream(body);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1f && second == 0x8b) {
+            in = new GZIPInputStream(in);
+        }
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            String loc = null;
+            Instant lastModified = null;
+            double priority = DEFAULT_PRIORITY;
+            int depth = 0;
+            // глубина открытого url/sitemap: loc, lastmod и priority берутся только из его прямых потомков,
+            // вложенные image:loc, video:loc и т.п. пропускаются
+            int entryDepth = -1;
+            while (reader.hasNext() && entries.size() < sitemapSettings.getMaxUrls()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        entryDepth = depth;
+                        loc = null;
+                        lastModified = null;
+                        priority = DEFAULT_PRIORITY;
+                    } else if (entryDepth > 0 && depth == entryDepth + 1) {
+                        switch (name) {
+                            case "loc" -> loc = reader.getElementText().trim();
+                            case "lastmod" -> lastModified = parseDate(reader.getElementText().trim());
+                            case "priority" -> priority = parsePriority(reader.getElementText().trim());
+                            default -> {
+                                continue;
+                            }
+                        }
+                        depth--;    // getElementText прочитал и закрывающий тег
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == entryDepth) {
+                        if (loc != null && !loc.isEmpty()) {
+                            if (reader.getLocalName().equals("url")) {
+                                entries.add(new SitemapEntry(loc, lastModified, priority));
+                            } else {
+                                sitemaps.add(loc);
+                            }
+                        }
+                        entryDepth = -1;
+                    }
+                    depth--;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Дата в формате W3C Datetime: 2024-01-31 или 2024-01-31T10:15:30+03:00
+     */
+    static Instant parseDate(String value) {
+        try {
+            if (value.length() <= 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static double parsePriority(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return DEFAULT_PRIORITY;
+        }
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,60 @@
+package searchengine.parsing.sitemapping;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Поток тела ответа с ограничением размера. Тело больше ограничения не обрезается,
+ * а чтение завершается {@link IOException}: неполная страница не сохраняется и не индексируется.
+ */
+class SizeLimitInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+
+    /**
+     * @param in    - исходный поток
+     * @param limit - наибольший размер в байтах
+     */
+    SizeLimitInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            count(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long bytes) throws IOException {
+        count += bytes;
+        if (count > limit) {
+            throw new IOException("response body exceeds " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package searchengine.parsing.sitemapping;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Извлечение заголовка, текста и ссылок из HTML за один проход по потоку символов,
+ * без построения DOM. В памяти остаются только текст и ссылки страницы,
+ * а не дерево элементов, которое в несколько раз больше исходного HTML.
+ * Текст совпадает с Element.text() для body: пробелы схлопываются,
+ * между блочными элементами ставится пробел, содержимое script/style и head пропускается.
+ */
+public class StreamingHtmlExtractor {
+    private static final int PUSHBACK_SIZE = 64;
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of("script", "style");
+    private static final Set<String> BLOCK_ELEMENTS = Set.of("address", "article", "aside", "blockquote", "br",
+            "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3",
+            "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "table",
+            "tbody", "td", "tfoot", "th", "thead", "tr", "ul", "option", "body");
+
+    private final PushbackReader reader;
+    private String baseUri;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder textRun = new StringBuilder();
+    private final List<String> links = new ArrayList<>();
+    private String title = "";
+    private String canonicalUrl;
+    private boolean isInHead;
+    private boolean isBodyStarted;
+
+    private StreamingHtmlExtractor(Reader reader, String baseUri) {
+        this.reader = new PushbackReader(reader, PUSHBACK_SIZE);
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * Разбор HTML
+     *
+     * @param reader  - поток символов страницы
+     * @param baseUri - адрес страницы для построения абсолютных ссылок
+     * @return заголовок, текст и ссылки
+     */
+    public static PageContent extract(Reader reader, String baseUri) throws IOException {
+        StreamingHtmlExtractor extractor = new StreamingHtmlExtractor(reader, baseUri);
+        extractor.parse();
+        return new PageContent(extractor.title, extractor.text.toString().trim(), extractor.links,
+                extractor.canonicalUrl);
+    }
+
+    private void parse() throws IOException {
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '<' && readMarkup()) {
+                continue;
+            }
+            textRun.append((char) c);
+        }
+        flushText();
+    }
+
+    /**
+     * Разбор разметки после '<'
+     *
+     * @return false если это не разметка и '<' - часть текста
+     */
+    private boolean readMarkup() throws IOException {
+        int next = reader.read();
+        if (next == -1) {
+            return false;
+        }
+        if (next == '!' || next == '?') {
+            flushText();
+            if (next == '!' && startsWith("--")) {
+                skipUntil("-->");
+            } else {
+                skipUntil(">");
+            }
+            return true;
+        }
+        boolean isEndTag = next == '/';
+        if (isEndTag) {
+            next = reader.read();
+        }
+        if (next == -1 || !Character.isLetter(next)) {
+            if (next != -1) {
+                reader.unread(next);
+            }
+            if (isEndTag) {
+                reader.unread('/');
+            }
+            return false;
+        }
+        flushText();
+        reader.unread(next);
+        String name = readName();
+        Map<String, String> attributes = readAttributes();
+        if (isEndTag) {
+            endTag(name);
+        } else {
+            startTag(name, attributes);
+        }
+        return true;
+    }
+
+    private void startTag(String name, Map<String, String> attributes) throws IOException {
+        switch (name) {
+            case "head" -> isInHead = true;
+            case "title" -> {
+                String value = Parser.unescapeEntities(readRawText(name, true), false);
+                if (isBodyStarted) {
+                    appendNormalized(value);
+                } else if (title.isEmpty()) {
+                    title = normalize(value).trim();
+                }
+                return;
+            }
+            case "base" -> {
+                String href = attributes.get("href");
+                if (href != null && !href.isBlank()) {
+                    baseUri = StringUtil.resolve(baseUri, href);
+                }
+            }
+            case "link" -> {
+                String href = attributes.get("href");
+                String rel = attributes.get("rel");
+                if (canonicalUrl == null && href != null && !href.isBlank()
+                        && rel != null && rel.trim().equalsIgnoreCase("canonical")) {
+                    canonicalUrl = StringUtil.resolve(baseUri, href.trim());
+                }
+            }
+            case "a" -> {
+                String href = attributes.get("href");
+                if (href != null) {
+                    links.add(StringUtil.resolve(baseUri, href.trim()));
+                }
+            }
+            default -> {
+            }
+        }
+        if (SKIPPED_ELEMENTS.contains(name)) {
+            readRawText(name, false);
+            return;
+        }
+        if (name.equals("body") || !isHeadElement(name)) {
+            isInHead = false;
+            isBodyStarted = true;
+        }
+        if (BLOCK_ELEMENTS.contains(name)) {
+            appendSpace();
+        }
+    }
+
+    private void endTag(String name) {
+        if (name.equals("head")) {
+            isInHead = false;
+        }
+        if (BLOCK_ELEMENTS.contains(name)) {
+            appendSpace();
+        }
+    }
+
+    private static boolean isHeadElement(String name) {
+        return switch (name) {
+            case "head", "meta", "link", "base", "noscript", "html" -> true;
+            default -> false;
+        };
+    }
+
+    private String readName() throws IOException {
+        StringBuilder name = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (Character.isWhitespace(c) || c == '/' || c == '>') {
+                reader.unread(c);
+                break;
+            }
+            name.append((char) c);
+        }
+        return name.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Атрибуты тега до '>' включительно
+     */
+    private Map<String, String> readAttributes() throws IOException {
+        Map<String, String> attributes = new HashMap<>();
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '>') {
+                break;
+            }
+            if (Character.isWhitespace(c) || c == '/') {
+                continue;
+            }
+            StringBuilder name = new StringBuilder();
+            name.append((char) c);
+            while ((c = reader.read()) != -1 && c != '=' && c != '>' && !Character.isWhitespace(c)) {
+                name.append((char) c);
+            }
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = reader.read();
+            }
+            String value = "";
+            if (c == '=') {
+                value = readAttributeValue();
+            } else if (c != -1) {
+                reader.unread(c);
+            }
+            attributes.putIfAbsent(name.toString().toLowerCase(Locale.ROOT), Parser.unescapeEntities(value, true));
+        }
+        return attributes;
+    }
+
+    private String readAttributeValue() throws IOException {
+        int c = reader.read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = reader.read();
+        }
+        StringBuilder value = new StringBuilder();
+        if (c == '"' || c == '\'') {
+            int quote = c;
+            while ((c = reader.read()) != -1 && c != quote) {
+                value.append((char) c);
+            }
+            return value.toString();
+        }
+        while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+            value.append((char) c);
+            c = reader.read();
+        }
+        if (c == '>') {
+            reader.unread(c);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Содержимое элемента до закрывающего тега (script, style, title)
+     *
+     * @param name      - имя элемента
+     * @param isCapture - сохранять содержимое
+     * @return содержимое или пустая строка
+     */
+    private String readRawText(String name, boolean isCapture) throws IOException {
+        StringBuilder content = new StringBuilder();
+        String endTag = "</" + name;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '<' && startsWithIgnoreCase(endTag.substring(1))) {
+                skipUntil(">");
+                break;
+            }
+            if (isCapture) {
+                content.append((char) c);
+            }
+        }
+        return content.toString();
+    }
+
+    private boolean startsWith(String expected) throws IOException {
+        return matches(expected, false);
+    }
+
+    private boolean startsWithIgnoreCase(String expected) throws IOException {
+        return matches(expected, true);
+    }
+
+    /**
+     * Проверка следующих символов потока, при несовпадении символы возвращаются в поток
+     */
+    private boolean matches(String expected, boolean isIgnoreCase) throws IOException {
+        char[] read = new char[expected.length()];
+        int count = 0;
+        boolean isMatch = true;
+        while (count < expected.length()) {
+            int c = reader.read();
+            if (c == -1) {
+                isMatch = false;
+                break;
+            }
+            read[count++] = (char) c;
+            char expectedChar = expected.charAt(count - 1);
+            boolean isEqual = isIgnoreCase
+                    ? Character.toLowerCase((char) c) == Character.toLowerCase(expectedChar)
+                    : c == expectedChar;
+            if (!isEqual) {
+                isMatch = false;
+                break;
+            }
+        }
+        if (!isMatch) {
+            reader.unread(read, 0, count);
+        }
+        return isMatch;
+    }
+
+    private void skipUntil(String terminator) throws IOException {
+        StringBuilder window = new StringBuilder(terminator.length() + 1);
+        int c;
+        while ((c = reader.read()) != -1) {
+            window.append((char) c);
+            if (window.length() > terminator.length()) {
+                window.deleteCharAt(0);
+            }
+            if (window.length() == terminator.length() && window.toString().equals(terminator)) {
+                return;
+            }
+        }
+    }
+
+    private void flushText() {
+        if (textRun.isEmpty()) {
+            return;
+        }
+        if (!isInHead) {
+            appendNormalized(Parser.unescapeEntities(textRun.toString(), false));
+        }
+        textRun.setLength(0);
+    }
+
+    private void appendNormalized(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (StringUtil.isActuallyWhitespace(c)) {
+                appendSpace();
+            } else {
+                text.append(c);
+            }
+        }
+    }
+
+    private void appendSpace() {
+        if (!text.isEmpty() && text.charAt(text.length() - 1) != ' ') {
+            text.append(' ');
+        }
+    }
+
+    private static String normalize(String value) {
+        StringBuilder builder = new StringBuilder();
+        StringUtil.appendNormalisedWhitespace(builder, value, false);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package searchengine.parsing.sitemapping;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Множество посещённых ссылок в виде 64-битных отпечатков (murmur3).
+ * Отпечатки хранятся в хэш-таблицах с открытой адресацией на массивах long,
+ * таблица разбита на сегменты со своими блокировками.
+ * На ссылку приходится 8-16 байт вместо строки и записи ConcurrentHashMap.
+ * Вероятность коллизии отпечатков для 10^7 ссылок - порядка 10^-5.
+ */
+public class UrlFingerprintSet {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final long EMPTY = 0L;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    public UrlFingerprintSet() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Добавляет ссылку
+     *
+     * @param url - ссылка
+     * @return true если ссылки ещё не было
+     */
+    public boolean add(String url) {
+        long fingerprint = fingerprint(url);
+        return segmentFor(fingerprint).add(fingerprint);
+    }
+
+    public boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        return segmentFor(fingerprint).contains(fingerprint);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Объём памяти, занятый таблицами отпечатков
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Объём памяти в пересчёте на миллион ссылок
+     */
+    public long memoryBytesPerMillion() {
+        int size = size();
+        return size == 0 ? 0 : memoryBytes() * 1_000_000L / size;
+    }
+
+    /**
+     * Освобождение памяти
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    static long fingerprint(String url) {
+        long fingerprint = HASH_FUNCTION.hashString(url, StandardCharsets.UTF_8).asLong();
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+
+    private Segment segmentFor(long fingerprint) {
+        return segments[(int) (fingerprint >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    private static final class Segment {
+        private long[] table = new long[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        synchronized boolean add(long fingerprint) {
+            int slot = findSlot(table, fingerprint);
+            if (table[slot] != EMPTY) {
+                return false;
+            }
+            table[slot] = fingerprint;
+            if (++size > table.length * LOAD_FACTOR) {
+                resize();
+            }
+            return true;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            return table[findSlot(table, fingerprint)] != EMPTY;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long memoryBytes() {
+            return (long) table.length * Long.BYTES;
+        }
+
+        synchronized void clear() {
+            table = new long[INITIAL_SEGMENT_CAPACITY];
+            size = 0;
+        }
+
+        private void resize() {
+            long[] oldTable = table;
+            table = new long[oldTable.length * 2];
+            for (long fingerprint : oldTable) {
+                if (fingerprint != EMPTY) {
+                    table[findSlot(table, fingerprint)] = fingerprint;
+                }
+            }
+        }
+
+        private static int findSlot(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[slot] != EMPTY && table[slot] != fingerprint) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
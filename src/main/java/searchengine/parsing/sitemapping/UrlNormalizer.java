@@ -0,0 +1,143 @@
+package searchengine.parsing.sitemapping;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.UrlNormalizerSettings;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Приведение ссылок к каноническому виду перед проверкой на повтор:
+ * схема и хост в нижнем регистре, без "www." и порта по умолчанию, без фрагмента,
+ * без "." и ".." в пути, индексный файл заменяется каталогом,
+ * параметры запроса фильтруются по спискам и сортируются.
+ * Ссылки на файлы с запрещёнными расширениями и не http(s) отбрасываются.
+ */
+@Component
+@RequiredArgsConstructor
+public class UrlNormalizer {
+    private final UrlNormalizerSettings settings;
+
+    public boolean isHonorCanonical() {
+        return settings.isHonorCanonical();
+    }
+
+    /**
+     * Каноническая ссылка
+     *
+     * @param url - абсолютная ссылка
+     * @return ссылка или null, если ссылка не подлежит загрузке
+     */
+    public String normalize(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost() == null ? null : uri.getHost().toLowerCase(Locale.ROOT);
+        if (host == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            return null;
+        }
+        if (settings.isStripWww() && host.startsWith("www.")) {
+            host = host.substring(4);
+        }
+        int port = uri.getPort();
+        if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+            port = -1;
+        }
+
+        String path = normalizePath(uri.getRawPath());
+        if (path == null) {
+            return null;
+        }
+        String query = normalizeQuery(uri.getRawQuery());
+
+        StringBuilder builder = new StringBuilder(scheme).append("://").append(host);
+        if (port != -1) {
+            builder.append(':').append(port);
+        }
+        builder.append(path);
+        if (!query.isEmpty()) {
+            builder.append('?').append(query);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Протокол, хост и порт канонической ссылки: по ним отбираются ссылки сайта и вычисляются пути страниц
+     *
+     * @param url - абсолютная ссылка
+     * @return например https://site.ru или null, если ссылка не подлежит загрузке
+     */
+    public String origin(String url) {
+        String normalized = normalize(url);
+        if (normalized == null) {
+            return null;
+        }
+        return normalized.substring(0, normalized.indexOf('/', normalized.indexOf("://") + 3));
+    }
+
+    private String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        String path = URI.create(rawPath.replaceAll("/{2,}", "/")).normalize().getRawPath();
+        if (path == null || !path.startsWith("/")) {
+            path = "/";
+        }
+        int lastSlash = path.lastIndexOf('/');
+        String fileName = path.substring(lastSlash + 1).toLowerCase(Locale.ROOT);
+        if (settings.getIndexFiles().contains(fileName)) {
+            return path.substring(0, lastSlash + 1);
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot >= 0 && settings.getDeniedExtensions().contains(fileName.substring(dot + 1))) {
+            return null;
+        }
+        return path;
+    }
+
+    private String normalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            String name = param.split("=", 2)[0].toLowerCase(Locale.ROOT);
+            boolean isAllowed = settings.getAllowedParams().isEmpty() || matches(settings.getAllowedParams(), name);
+            if (isAllowed && !matches(settings.getDeniedParams(), name)) {
+                params.add(param);
+            }
+        }
+        if (settings.isSortParams()) {
+            params.sort(Comparator.naturalOrder());
+        }
+        return String.join("&", params);
+    }
+
+    private static boolean matches(List<String> patterns, String name) {
+        for (String pattern : patterns) {
+            String lowerPattern = pattern.toLowerCase(Locale.ROOT);
+            boolean isMatch = lowerPattern.endsWith("*")
+                    ? name.startsWith(lowerPattern.substring(0, lowerPattern.length() - 1))
+                    : name.equals(lowerPattern);
+            if (isMatch) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,6 +1,9 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.IndexE;
 
@@ -16,4 +19,8 @@ public interface IndexRepository extends JpaRepository<IndexE, Long> {
     List<IndexE> findByPageId(int pageId);
 
     Optional<IndexE> findByLemmaIdAndPageId(int lemmaId, int pageId);
+
+    @Query("select i.indexId, l.lemmaId, l.siteId, i.pageId, i.rank from IndexE i join i.lemmaByLemmaId l "
+            + "where i.indexId > :indexId order by i.indexId")
+    List<Object[]> findPostingsAfter(@Param("indexId") int indexId, Pageable pageable);
 }
@@ -0,0 +1,80 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Lemma;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Приведение таблицы lemma к уникальному ключу (site_id, lemma) из {@link Lemma}.
+ * В БД, заполненной до появления ключа, одна лемма сайта могла быть записана несколько раз,
+ * и ddl-auto: update не может создать ключ (ошибка только пишется в лог).
+ * При старте дубли сливаются в строку с наименьшим lemma_id: на неё переводятся строки index_e,
+ * повторы страницы удаляются, частота пересчитывается по index_e; затем создаётся ключ.
+ * Выполняется до загрузки {@link searchengine.index.LemmaDictionary} и {@link searchengine.index.InvertedIndex}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDuplicatesMigration {
+    public static final String UNIQUE_KEY_NAME = "uk_lemma_site_id_lemma";
+
+    private static final String DUPLICATES = "(select site_id, lemma, min(lemma_id) keep_id from search_engine.lemma "
+            + "group by site_id, lemma having count(*) > 1)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        List<String> uniqueKeys = findUniqueKeys();
+        if (!uniqueKeys.contains(UNIQUE_KEY_NAME)) {
+            long startTime = System.currentTimeMillis();
+            Integer merged = transactionTemplate.execute(status -> mergeDuplicates());
+            jdbcTemplate.execute("alter table search_engine.lemma add constraint " + UNIQUE_KEY_NAME
+                    + " unique (site_id, lemma)");
+            log.info("Lemma unique key created: {} duplicate lemmas merged, {} ms",
+                    merged, System.currentTimeMillis() - startTime);
+        }
+        for (String key : uniqueKeys) {
+            if (!key.equals(UNIQUE_KEY_NAME)) {
+                jdbcTemplate.execute("alter table search_engine.lemma drop index " + key);
+            }
+        }
+    }
+
+    /**
+     * Уникальные индексы таблицы lemma ровно по (site_id, lemma)
+     */
+    private List<String> findUniqueKeys() {
+        return jdbcTemplate.queryForList("select index_name from information_schema.statistics "
+                + "where table_schema = 'search_engine' and table_name = 'lemma' and non_unique = 0 "
+                + "group by index_name "
+                + "having group_concat(column_name order by seq_in_index) = 'site_id,lemma'", String.class);
+    }
+
+    /**
+     * @return кол-во удалённых строк-дублей
+     */
+    private int mergeDuplicates() {
+        jdbcTemplate.update("update search_engine.index_e i "
+                + "join search_engine.lemma l on l.lemma_id = i.lemma_id "
+                + "join " + DUPLICATES + " d on d.site_id = l.site_id and d.lemma = l.lemma "
+                + "set i.lemma_id = d.keep_id where i.lemma_id <> d.keep_id");
+        jdbcTemplate.update("delete i from search_engine.index_e i "
+                + "join " + DUPLICATES + " d on d.keep_id = i.lemma_id "
+                + "join search_engine.index_e j on j.lemma_id = i.lemma_id and j.page_id = i.page_id "
+                + "and j.index_id < i.index_id");
+        jdbcTemplate.update("update search_engine.lemma l "
+                + "join " + DUPLICATES + " d on d.keep_id = l.lemma_id "
+                + "set l.frequency = (select count(*) from search_engine.index_e i where i.lemma_id = l.lemma_id)");
+        return jdbcTemplate.update("delete l from search_engine.lemma l "
+                + "join " + DUPLICATES + " d on d.site_id = l.site_id and d.lemma = l.lemma "
+                + "and l.lemma_id <> d.keep_id");
+    }
+}
@@ -1,10 +1,14 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Lemma;
 
 import javax.transaction.Transactional;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,4 +23,7 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     void deleteBySiteIdAndFrequency(int siteId, int i);
 
     Lemma findByLemmaId(int lemmaId);
+
+    @Query("select l.lemmaId, l.siteId, l.lemma, l.frequency from Lemma l where l.lemmaId > :lemmaId order by l.lemmaId")
+    List<Object[]> findLemmasAfter(@Param("lemmaId") int lemmaId, Pageable pageable);
 }
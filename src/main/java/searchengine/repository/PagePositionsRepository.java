@@ -0,0 +1,20 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import searchengine.model.PagePositions;
+
+import javax.transaction.Transactional;
+
+@Repository
+@Transactional
+public interface PagePositionsRepository extends JpaRepository<PagePositions, Integer> {
+    void deleteByPageId(int pageId);
+
+    @Modifying
+    @Query("delete from PagePositions p where p.siteId = :siteId")
+    void deleteAllBySiteId(@Param("siteId") int siteId);
+}
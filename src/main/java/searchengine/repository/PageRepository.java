@@ -1,10 +1,13 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Page;
 
 import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,4 +22,38 @@ public interface PageRepository extends JpaRepository<Page, Long> {
     Page findBySiteIdAndPath(int siteId, String uri);
 
     Page findByPageId(Integer pageId);
+
+    @Query("select p.path from Page p where p.siteId = :siteId")
+    List<String> findPathsBySiteId(@Param("siteId") int siteId);
+
+    /**
+     * Пути и отпечатки SimHash страниц сайта
+     */
+    @Query("select p.path, p.simhash from Page p where p.siteId = :siteId and p.simhash is not null")
+    List<Object[]> findSimhashesBySiteId(@Param("siteId") int siteId);
+
+    /**
+     * Пути и заголовки страниц без загрузки текста
+     */
+    @Query("select p.pageId, p.path, p.title from Page p where p.pageId in :pageIds")
+    List<Object[]> findTitlesByPageIds(@Param("pageIds") Collection<Integer> pageIds);
+
+    /**
+     * Тексты и хэши текстов страниц для сниппетов одним запросом
+     */
+    @Query("select p.pageId, p.content, p.contentHash from Page p where p.pageId in :pageIds")
+    List<Object[]> findContentsByPageIds(@Param("pageIds") Collection<Integer> pageIds);
+
+    /**
+     * Id страниц сайта, сохранённых, но не лемматизированных (обход прерван до лемматизации).
+     * Позиции записываются для каждой лемматизированной страницы, в том числе без лемм,
+     * поэтому такие страницы не лемматизируются повторно.
+     */
+    @Query("select p.pageId from Page p where p.siteId = :siteId and p.code = 200 " +
+            "and not exists (select i.indexId from IndexE i where i.pageId = p.pageId) " +
+            "and not exists (select pp.pageId from PagePositions pp where pp.pageId = p.pageId) " +
+            "order by p.pageId")
+    List<Integer> findNotIndexedIdsBySiteId(@Param("siteId") int siteId);
+
+    List<Page> findByPageIdIn(Collection<Integer> pageIds);
 }
@@ -20,5 +20,7 @@ public interface SiteRepository extends JpaRepository<SiteE, Integer> {
 
     boolean existsByName(String name);
 
+    List<SiteE> findByStatus(Status status);
+
     SiteE getSiteEBySiteId(int siteId);
 }
@@ -0,0 +1,13 @@
+package searchengine.services.duplicates;
+
+import searchengine.dto.duplicates.DuplicatesResponse;
+
+public interface DuplicateService {
+
+    /**
+     * Метод возвращает кол-во почти одинаковых страниц, не попавших в индекс при последнем обходе сайтов,
+     * и примеры таких страниц со ссылкой на сохранённый оригинал.
+     * @return DuplicatesResponse
+     */
+    DuplicatesResponse getDuplicates();
+}
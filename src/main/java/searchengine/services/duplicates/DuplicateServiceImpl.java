@@ -0,0 +1,63 @@
+package searchengine.services.duplicates;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.config.Site;
+import searchengine.config.SiteList;
+import searchengine.dto.duplicates.DuplicateItem;
+import searchengine.dto.duplicates.DuplicatesResponse;
+import searchengine.dto.duplicates.SiteDuplicatesItem;
+import searchengine.index.NearDuplicateIndex;
+import searchengine.model.SiteE;
+import searchengine.parsing.DuplicateDetector;
+import searchengine.repository.SiteRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Service
+public class DuplicateServiceImpl implements DuplicateService {
+
+    private final SiteList sites;
+    private final SiteRepository siteRepository;
+    private final DuplicateDetector duplicateDetector;
+
+    @Override
+    public DuplicatesResponse getDuplicates() {
+        DuplicatesResponse response = new DuplicatesResponse();
+        List<SiteDuplicatesItem> detailed = new ArrayList<>();
+        int total = 0;
+        for (Site site : sites.getSites()) {
+            SiteE siteE = siteRepository.findByName(site.getName()).orElse(null);
+            NearDuplicateIndex.Report report = siteE == null ? null : duplicateDetector.getReport(siteE.getSiteId());
+            if (report == null) {
+                continue;
+            }
+            detailed.add(setSiteDuplicatesItem(site, report));
+            total += report.getCollapsedPages();
+        }
+        response.setResult(true);
+        response.setTotal(total);
+        response.setDetailed(detailed);
+        return response;
+    }
+
+    private SiteDuplicatesItem setSiteDuplicatesItem(Site site, NearDuplicateIndex.Report report) {
+        SiteDuplicatesItem item = new SiteDuplicatesItem();
+        item.setUrl(site.getUrl());
+        item.setName(site.getName());
+        item.setChecked(report.getCheckedPages());
+        item.setCollapsed(report.getCollapsedPages());
+        List<DuplicateItem> examples = new ArrayList<>();
+        for (NearDuplicateIndex.Duplicate duplicate : report.getExamples()) {
+            DuplicateItem example = new DuplicateItem();
+            example.setPath(duplicate.getPath());
+            example.setOriginalPath(duplicate.getOriginalPath());
+            example.setDistance(duplicate.getDistance());
+            examples.add(example);
+        }
+        item.setExamples(examples);
+        return item;
+    }
+}
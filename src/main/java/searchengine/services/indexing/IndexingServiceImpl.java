@@ -5,17 +5,24 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Messages;
 import searchengine.config.Site;
 import searchengine.config.SiteList;
 import searchengine.dto.Response;
 import searchengine.dto.indexing.IndexingErrorResponse;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.index.InvertedIndex;
+import searchengine.index.LemmaDictionary;
+import searchengine.index.SearchResultCache;
 import searchengine.model.*;
+import searchengine.parsing.DuplicateDetector;
+import searchengine.parsing.sitemapping.CrawlFrontierStore;
 import searchengine.parsing.sitemapping.SiteParser;
 import searchengine.parsing.sitemapping.Utils;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
+import searchengine.repository.PagePositionsRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
@@ -23,10 +30,12 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 @Slf4j
@@ -38,11 +47,34 @@ public class IndexingServiceImpl implements IndexingService {
     private final IndexRepository indexRepository;
     private final SiteParser siteParser;
     private final SiteList siteListFromConfig;
-    private final List<SiteE> siteEList = new ArrayList<>();
+    private final List<SiteE> siteEList = new CopyOnWriteArrayList<>();
     private final PageRepository pageRepository;
+    private final PagePositionsRepository pagePositionsRepository;
     private final SiteRepository siteRepository;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final SearchResultCache searchResultCache;
+    private final CrawlFrontierStore frontierStore;
+    private final DuplicateDetector duplicateDetector;
+    private final CrawlerSettings crawlerSettings;
     private ThreadPoolExecutor executor;
 
+    /**
+     * Сайты, оставшиеся в статусе INDEXING после аварийного завершения приложения,
+     * переводятся в FAILED, чтобы следующая индексация продолжила их обход
+     */
+    @PostConstruct
+    public void markInterruptedSites() {
+        List<SiteE> interruptedSites = siteRepository.findByStatus(Status.INDEXING);
+        interruptedSites.forEach(e -> {
+            e.setStatus(Status.FAILED);
+            e.setStatusTime(Utils.setNow());
+            e.setLastError(Messages.INDEXING_INTERRUPTED);
+            log.warn("Site '{}': {}", e.getName(), Messages.INDEXING_INTERRUPTED);
+        });
+        siteRepository.saveAll(interruptedSites);
+    }
+
     /******************************************************************************************
      * Запуск полной индексации
      *
@@ -76,13 +108,15 @@ public class IndexingServiceImpl implements IndexingService {
                 .reduce(0, Integer::sum) > 0) {
             return false;
         }
-        siteParser.clearUniqueLinks();
+        siteEList.clear();
 
+        /* у каждого сайта своя сессия обхода, поэтому сайты индексируются параллельно */
         final ThreadFactory threadFactory = new ThreadFactoryBuilder()
                 .setNameFormat("Cайт: %d")
                 .build();
-        executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1, threadFactory);
-        executor.setMaximumPoolSize(Runtime.getRuntime().availableProcessors());
+        int threadCount = Math.max(1, Math.min(siteListFromConfig.getSites().size(),
+                Runtime.getRuntime().availableProcessors()));
+        executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCount, threadFactory);
 
         siteListFromConfig.getSites().forEach(e -> {
             boolean isCreate = !siteRepository.existsByName(e.getName());
@@ -111,6 +145,8 @@ public class IndexingServiceImpl implements IndexingService {
         }
         SiteE siteE;
         int siteId;
+        boolean isResume = false;
+        boolean isRefresh = false;
         if (isCreate) {
             siteE = new SiteE(Status.INDEXING, Utils.setNow(), url, name);
             log.info("<<<=== Site '{}' added", name);
@@ -120,21 +156,34 @@ public class IndexingServiceImpl implements IndexingService {
                 log.warn("Сайт {} не найден", name);
                 return;
             }
+            isResume = siteE.getStatus() == Status.FAILED
+                    && frontierStore.isResumeEnabled()
+                    && frontierStore.exists(siteE.getSiteId());
+            isRefresh = !isResume && siteE.getStatus() == Status.INDEXED && crawlerSettings.isIncremental();
             siteE.setStatus(Status.INDEXING);
 
-            log.info("<<<=== Site '{}' changed", siteE.getName());
-            deleteByName(name);
+            if (isResume) {
+                log.info("<<<=== Site '{}' resumed", siteE.getName());
+            } else if (isRefresh) {
+                log.info("<<<=== Site '{}' refreshed", siteE.getName());
+            } else {
+                log.info("<<<=== Site '{}' changed", siteE.getName());
+                deleteByName(name);
+            }
         }
 
         siteE = siteRepository.save(siteE);
         siteId = siteE.getSiteId();
         siteEList.add(siteE);
 
-        /* подготовка данных */
-        siteParser.initSiteParser(siteId, Utils.getProtocolAndDomain(url), url);
-
         /* вызов парсинга сайта */
-        siteParser.getLinks();
+        if (isResume) {
+            siteParser.resumeSite(siteId, Utils.getProtocolAndDomain(url), url);
+        } else if (isRefresh) {
+            siteParser.refreshSite(siteId, Utils.getProtocolAndDomain(url), url);
+        } else {
+            siteParser.parseSite(siteId, Utils.getProtocolAndDomain(url), url);
+        }
     }
 
     /**
@@ -146,6 +195,10 @@ public class IndexingServiceImpl implements IndexingService {
         Optional<SiteE> siteByName = siteRepository.findByName(name);
         if (siteByName.isPresent()) {
             int siteId = siteByName.get().getSiteId();
+            invertedIndex.removeSite(siteId);
+            lemmaDictionary.removeSite(siteId);
+            searchResultCache.invalidateSite(siteId);
+            duplicateDetector.remove(siteId);
 
             log.warn("lemma deleteAllBySiteId: {}", siteId);
             try {
@@ -155,6 +208,7 @@ public class IndexingServiceImpl implements IndexingService {
             }
             log.warn("page deleteAllBySiteId: {}", siteId);
             try {
+                pagePositionsRepository.deleteAllBySiteId(siteId);
                 pageRepository.deleteAllBySiteId(siteId);
             } catch (Exception e) {
                 log.error("pageRepository.deleteAllBySiteIdInBatch() message: {}", e.getMessage());
@@ -279,7 +333,9 @@ public class IndexingServiceImpl implements IndexingService {
             return false;
         }
 
-        siteE.setStatus(Status.INDEXED);
+        boolean isWritten = siteParser.flushLemmas(siteE.getSiteId());
+        siteE.setStatus(isWritten ? Status.INDEXED : Status.FAILED);
+        siteE.setLastError(isWritten ? "" : Messages.INDEX_WRITE_FAILED);
         siteE.setStatusTime(Utils.setNow());
         siteRepository.save(siteE);
         log.info("page saved...");
@@ -320,6 +376,7 @@ public class IndexingServiceImpl implements IndexingService {
         Page page = pageRepository.findBySiteIdAndPath(siteId, path);
         if (page != null) {
             deleteLemmas(page, siteId);
+            pagePositionsRepository.deleteByPageId(page.getPageId());
             pageRepository.delete(page);
         }
     }
@@ -337,9 +394,12 @@ public class IndexingServiceImpl implements IndexingService {
                     Lemma lemma = lemmaRepository.findByLemmaId(e.getLemmaId());
                     lemma.setFrequency(lemma.getFrequency() - 1);          // Frequency - 1
                     lemmaList.add(lemma);
+                    lemmaDictionary.merge(siteId, lemma.getLemma(), lemma.getLemmaId(), -1);
                 }
         );
         lemmaRepository.saveAll(lemmaList);
+        invertedIndex.removePage(page.getPageId(), indexList.stream().map(IndexE::getLemmaId).toList());
+        searchResultCache.invalidateSite(siteId);
         log.info("Lemmas by pageId: {} are removed", page.getPageId());
         lemmaRepository.deleteBySiteIdAndFrequency(siteId, 0);      // delete if Frequency == 0
     }
@@ -2,6 +2,8 @@ package searchengine.services.search;
 
 import searchengine.dto.Response;
 
+import java.util.List;
+
 public interface SearchService {
     /**
      * Метод осуществляет поиск страниц по переданному поисковому запросу (параметр query).
@@ -13,8 +15,19 @@ public interface SearchService {
      * @param offset — сдвиг от 0 для постраничного вывода (параметр необязательный;
      *               если не установлен, то значение по умолчанию равно нулю);
      * @param limit  — количество результатов, которое необходимо вывести
-     *               (параметр необязательный; если не установлен, то значение по умолчанию равно 20).
+     *               (параметр необязательный; если не установлен, то значение по умолчанию равно 20);
+     * @param snippets — строить сниппеты (если false, результаты возвращаются с пустыми сниппетами,
+     *                 которые загружаются отдельно через {@link #snippets}).
+     * @return response
+     */
+    Response search(String query, String site, int offset, int limit, boolean snippets);
+
+    /**
+     * Сниппеты страниц из результатов поиска
+     *
+     * @param query   — поисковый запрос;
+     * @param pageIds — Id страниц (поле pageId результатов поиска).
      * @return response
      */
-    Response search(String query, String site, int offset, int limit);
+    Response snippets(String query, List<Integer> pageIds);
 }
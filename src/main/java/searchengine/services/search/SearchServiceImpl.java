@@ -4,34 +4,41 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import searchengine.config.Messages;
 import searchengine.config.Site;
+import searchengine.config.SearchSettings;
 import searchengine.config.SiteList;
 import searchengine.dto.Response;
 import searchengine.dto.search.SearchData;
 import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SnippetData;
+import searchengine.dto.search.SnippetsResponse;
+import searchengine.index.LemmaDictionary;
+import searchengine.index.SearchResultCache;
 import searchengine.lemma.LemmaFinder;
 import searchengine.model.*;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SearchServiceImpl implements SearchService {
 
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final RelevanceCalculator relevanceCalculator;
-    private final SnippetFormatter snippetFormatter;
+    private final SnippetRenderer snippetRenderer;
+    private final LemmaDictionary lemmaDictionary;
+    private final SiteSearchExecutor siteSearchExecutor;
+    private final SearchResultCache searchResultCache;
+    private final SearchSettings searchSettings;
 
     private final SiteList sites;
-    private final LemmaFinder lemmaFinder = LemmaFinder.getInstance();
+    private final LemmaFinder lemmaFinder;
 
     /**
      * Метод осуществляет поиск страниц по переданному поисковому запросу (параметр query).
@@ -43,37 +50,104 @@ public class SearchServiceImpl implements SearchService {
      * @param offset — сдвиг от 0 для постраничного вывода (параметр необязательный; если не
      *               установлен, то значение по умолчанию равно нулю);
      * @param limit  — количество результатов, которое необходимо вывести (параметр необязательный;
-     *               если не установлен, то значение по умолчанию равно 20).
+     *               если не установлен, то значение по умолчанию равно 20);
+     * @param snippets — строить сниппеты (если false, сниппеты загружаются отдельно через {@link #snippets}).
      * @return response
      */
     @Override
-    public Response search(String query, String site, int offset, int limit) {
+    public Response search(String query, String site, int offset, int limit, boolean snippets) {
 
-        List<SearchResults> searchResultsList = new ArrayList<>();
-        /* 1. Вывод параметров поискового запроса */
+        /* 1. Вывод и проверка параметров поискового запроса */
         printInfoBySearch(query, site, offset, limit);
+        if (offset < 0 || offset > searchSettings.getMaxOffset() || limit <= 0
+                || limit > searchSettings.getMaxLimit()) {
+            log.warn(Messages.INVALID_OFFSET_OR_LIMIT);
+            SearchResponse response = new SearchResponse();
+            response.setResult(false);
+            response.setError(Messages.INVALID_OFFSET_OR_LIMIT);
+            return response;
+        }
 
-        /* 2. Подготовка данных */
+        /* 2. Поиск в кэше по леммам запроса */
+        List<String> lemmaListFromQuery = lemmaFinder.collectLemmas(query).keySet().stream().sorted().toList();
+        String cacheKey = SearchResultCache.key(lemmaListFromQuery, site);
+        SearchResultCache.Entry cached = searchResultCache.get(cacheKey);
+        if (cached != null && cached.covers(offset, limit)) {
+            log.info("Результат из кэша, найдено: {}", cached.getCount());
+            return setResponseFromCache(cached, offset, limit, snippets);
+        }
+        long cacheVersion = searchResultCache.getVersion();
+
+        /* 3. Подготовка данных */
+        List<Integer> scopeSiteIds = getSiteIdList(site);
         List<Integer> siteIdList = new ArrayList<>();
-        List<String> lemmaListFromQuery = new ArrayList<>();
         List<Lemma> lemmaList = new ArrayList<>();
-        Response response = prepareDataForSearch(query, site, siteIdList, lemmaListFromQuery,
-                lemmaList);
+        Response response = prepareDataForSearch(site, scopeSiteIds, lemmaListFromQuery, siteIdList, lemmaList);
         if (response != null) {
             return response;
         }
 
-        /* 3. Заполнение и сортировка searchResultsList */
-        fillSearchResultsList(siteIdList, lemmaList, offset, limit, searchResultsList);
-        if (searchResultsList.isEmpty()) {
+        /* 4. Лучшие страницы каждого сайта и слияние в общий список */
+        int capacity = Math.max(offset + limit, searchSettings.getCachedResults());
+        SiteSearchExecutor.Results<TopPages> siteResults = fillTopPagesList(siteIdList, lemmaList, capacity);
+        List<TopPages> topPagesList = siteResults.getCompleted();
+        int count = topPagesList.stream().mapToInt(TopPages::getTotal).sum();
+        List<SearchResults> rankedList = TopPages.merge(topPagesList, 0, capacity);
+        if (!siteResults.isPartial()) {
+            searchResultCache.put(cacheKey, toCacheEntry(site == null ? null : scopeSiteIds, lemmaList,
+                    rankedList, count), cacheVersion);
+        }
+        if (count == 0) {
             return setResponseFalse("Не найдено");
         }
-        sortSearchResultsList(offset, limit, searchResultsList);
+        List<SearchResults> searchResultsList = window(rankedList, offset, limit);
 
-        /* 4. Довавление сниппетов */
-        setSnippetForSearchResults(lemmaList, searchResultsList);
+        /* 5. Довавление сниппетов */
+        setSnippetForSearchResults(toLemmaStrings(lemmaList), searchResultsList, snippets);
 
-        return setSearchData(searchResultsList);
+        SearchResponse searchResponse = setSearchData(searchResultsList, count);
+        searchResponse.setPartial(siteResults.isPartial());
+        return searchResponse;
+    }
+
+    /**
+     * Ответ по результату из кэша: порция списка и сниппеты
+     */
+    private Response setResponseFromCache(SearchResultCache.Entry cached, int offset, int limit, boolean snippets) {
+        if (cached.getCount() == 0) {
+            return setResponseFalse("Не найдено");
+        }
+        List<SearchResults> searchResultsList = new ArrayList<>();
+        int end = Math.min(offset + limit, cached.size());
+        for (int i = Math.max(offset, 0); i < end; i++) {
+            SearchResults searchResults = new SearchResults();
+            searchResults.setNumber(i + 1);
+            searchResults.setSiteId(cached.getSiteIds()[i]);
+            searchResults.setPageId(cached.getPageIds()[i]);
+            searchResults.setRelevance(cached.getRelevances()[i]);
+            searchResultsList.add(searchResults);
+        }
+        setSnippetForSearchResults(toLemmaStrings(cached.getLemmas()), searchResultsList, snippets);
+        return setSearchData(searchResultsList, cached.getCount());
+    }
+
+    private static SearchResultCache.Entry toCacheEntry(List<Integer> scopeSiteIds, List<Lemma> lemmaList,
+                                                        List<SearchResults> rankedList, int count) {
+        int[] siteIds = new int[rankedList.size()];
+        int[] pageIds = new int[rankedList.size()];
+        float[] relevances = new float[rankedList.size()];
+        for (int i = 0; i < rankedList.size(); i++) {
+            siteIds[i] = rankedList.get(i).getSiteId();
+            pageIds[i] = rankedList.get(i).getPageId();
+            relevances[i] = (float) rankedList.get(i).getRelevance();
+        }
+        int[] scope = scopeSiteIds == null ? null : scopeSiteIds.stream().mapToInt(Integer::intValue).toArray();
+        return new SearchResultCache.Entry(scope, List.copyOf(lemmaList), siteIds, pageIds, relevances, count);
+    }
+
+    private static List<SearchResults> window(List<SearchResults> rankedList, int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), rankedList.size());
+        return new ArrayList<>(rankedList.subList(from, Math.min(from + Math.max(limit, 0), rankedList.size())));
     }
 
     private void printInfoBySearch(String query, String site, int offset, int limit) {
@@ -89,28 +163,23 @@ public class SearchServiceImpl implements SearchService {
     /**
      * Подготовка данных для поиска
      *
-     * @param query              — поисковый запрос;
      * @param site               — сайт (null если все)
-     * @param siteIdList         - список Id сайтов где есть искомые слова
+     * @param scopeSiteIds       - список Id сайтов, по которым идёт поиск
      * @param lemmaListFromQuery - список слов(лемм) поисковых
+     * @param siteIdList         - список Id сайтов где есть искомые слова
      * @param lemmaList          - список найденных сущностей Lemma из БД
      * @return Response - null если всё в порядке
      */
     private Response prepareDataForSearch(
-            String query, String site,
-            List<Integer> siteIdList, List<String> lemmaListFromQuery, List<Lemma> lemmaList) {
+            String site, List<Integer> scopeSiteIds, List<String> lemmaListFromQuery,
+            List<Integer> siteIdList, List<Lemma> lemmaList) {
 
-        List<Integer> siteIdListTemp = getSiteIdList(site);
+        List<Integer> siteIdListTemp = scopeSiteIds;
         if (siteIdListTemp.isEmpty()) {
             return setResponseFalse("Search site " + site + " not found");
         }
 
-        List<String> lemmaListFromQueryTemp = Objects.requireNonNull(lemmaFinder)
-                .collectLemmas(query)
-                .keySet()
-                .stream().toList();
-
-        List<Lemma> lemmaListTemp = getLemmaList(siteIdListTemp, lemmaListFromQueryTemp);
+        List<Lemma> lemmaListTemp = getLemmaList(siteIdListTemp, lemmaListFromQuery);
         if (lemmaListTemp.isEmpty()) {
             return setResponseFalse("search lemmas: not found in database");
         }
@@ -125,7 +194,6 @@ public class SearchServiceImpl implements SearchService {
         lemmaListTemp = lemmaListTemp.stream().sorted(Comparator.comparingInt(Lemma::getFrequency)).toList();
 
         siteIdList.addAll(siteIdListTemp);
-        lemmaListFromQuery.addAll(lemmaListFromQueryTemp);
         lemmaList.addAll(lemmaListTemp);
 
         return null;
@@ -165,7 +233,7 @@ public class SearchServiceImpl implements SearchService {
     }
 
     /**
-     * Возвращает список сущностей Lemma из DB если количество лемм совпадает
+     * Возвращает список сущностей Lemma из словаря лемм если количество лемм совпадает
      *
      * @param siteIdList         список siteId
      * @param lemmaListFromQuery список лемм из запроса
@@ -175,7 +243,7 @@ public class SearchServiceImpl implements SearchService {
         List<Lemma> lemmaList = new ArrayList<>();
         for (Integer siteId : siteIdList) {
             for (String lem : lemmaListFromQuery) {
-                lemmaRepository.findBySiteIdAndLemma(siteId, lem).ifPresent(lemmaList::add);
+                lemmaDictionary.find(siteId, lem).ifPresent(lemmaList::add);
             }
             long countOfWordsFound = lemmaList.stream()
                     .filter(lemma -> siteId.equals(lemma.getSiteId())).count();
@@ -211,92 +279,100 @@ public class SearchServiceImpl implements SearchService {
     }
 
     /**
-     * Заполнение списка SearchResults
+     * Лучшие страницы каждого сайта, сайты обрабатываются параллельно
      *
-     * @param siteIdList        список siteId
-     * @param lemmaList         список лемм
-     * @param searchResultsList список
+     * @param siteIdList список siteId
+     * @param lemmaList  список лемм
+     * @param capacity   сколько лучших страниц сайта нужно
+     * @return результаты успевших сайтов, отсортированные по убыванию релевантности
      */
-    private void fillSearchResultsList(List<Integer> siteIdList,
-                                       List<Lemma> lemmaList, int offset, int limit, List<SearchResults> searchResultsList) {
-
-        double[][] relevance;
-
-        List<SearchResults> searchResultsListTemp = new ArrayList<>();
-        for (Integer i : siteIdList) {
-            relevance = relevanceCalculator.formationForOneSite(
-                    lemmaList.stream().filter(lemma -> lemma.getSiteId() == i).toList(), offset, limit,
-                    searchResultsListTemp);
-
-            // заполняем searchResultsList
-            for (int j = 0; j < relevance.length; j++) {
-                SearchResults results;
-                for (SearchResults searchResults : searchResultsListTemp) {
-                    results = searchResults;
-                    int ind = relevance[j].length - 1;
-                    if (results.getNumber() == (j + 1) && results.getSiteId() == i) {
-                        results.setRelevance(relevance[j][ind]);
-                    }
-                }
+    private SiteSearchExecutor.Results<TopPages> fillTopPagesList(List<Integer> siteIdList, List<Lemma> lemmaList,
+                                                                  int capacity) {
+        List<Callable<TopPages>> tasks = new ArrayList<>();
+        for (Integer siteId : siteIdList) {
+            List<Lemma> siteLemmas = lemmaList.stream().filter(lemma -> lemma.getSiteId() == siteId).toList();
+            tasks.add(() -> relevanceCalculator.topForOneSite(siteId, siteLemmas, capacity));
+        }
+        return siteSearchExecutor.invokeAll(tasks);
+    }
+
+    /**
+     * Сниппеты страниц из результатов поиска, запрошенных без сниппетов
+     *
+     * @param query   поисковый запрос
+     * @param pageIds Id страниц
+     * @return response
+     */
+    @Override
+    public Response snippets(String query, List<Integer> pageIds) {
+        SnippetsResponse response = new SnippetsResponse();
+        if (pageIds.size() > searchSettings.getCachedResults()) {
+            response.setError("Too many pages: " + pageIds.size());
+            return response;
+        }
+        List<String> lemmaList = List.copyOf(lemmaFinder.collectLemmas(query).keySet());
+        Map<Integer, String> snippets = snippetRenderer.render(new LinkedHashSet<>(pageIds), lemmaList);
+        for (Integer pageId : pageIds) {
+            String snippet = snippets.get(pageId);
+            if (snippet != null) {
+                response.getData().add(new SnippetData(pageId, snippet));
             }
         }
-        searchResultsList.addAll(searchResultsListTemp);
+        response.setError("");
+        response.setResult(true);
+        return response;
     }
 
     /**
-     * Сортировка списка SearchResults и после применение offset и limit
+     * Искомые леммы без повторов (одна лемма на нескольких сайтах), начиная с самой редкой
      */
-    private void sortSearchResultsList(int offset, int limit,
-                                       List<SearchResults> searchResultsList) {
-        List<SearchResults> searchResultsListTemp;
-
-        searchResultsListTemp = searchResultsList.stream()
-                .filter(searchResults -> searchResults.getRelevance() != 0.0)
-                .sorted(Comparator
-                        .comparing(SearchResults::getRelevance)
-                        .reversed())
-                .skip(offset)
-                .limit(limit)
-                .toList();
-
-        searchResultsList.clear();
-        searchResultsList.addAll(searchResultsListTemp);
+    private static List<String> toLemmaStrings(List<Lemma> lemmaList) {
+        return lemmaList.stream().map(Lemma::getLemma).distinct().toList();
     }
 
     /**
-     * Заполнение сниппетами списка SearchResults
+     * Заполнение заголовками, путями и сниппетами списка SearchResults.
+     * Заголовки и тексты страниц загружаются одним запросом каждые, без загрузки по одной странице.
      *
      * @param lemmaList         список лемм
      * @param searchResultsList список
+     * @param snippets          строить сниппеты
      */
-    private void setSnippetForSearchResults(List<Lemma> lemmaList,
-                                            List<SearchResults> searchResultsList) {
-        Iterator<SearchResults> iteratorSR = searchResultsList.iterator();
-        SearchResults results;
-        while (iteratorSR.hasNext()) {
-            results = iteratorSR.next();
-            Page page = pageRepository.findByPageId(results.getPageId());
-            results.setTitle(page.getTitle());
-            results.setUrl(page.getPath());
-
-            String snippet = snippetFormatter.getSnippet(page.getContent(), lemmaList);
-            results.setSnippet(snippet);
+    private void setSnippetForSearchResults(List<String> lemmaList, List<SearchResults> searchResultsList,
+                                            boolean snippets) {
+        List<Integer> pageIds = searchResultsList.stream().map(SearchResults::getPageId).toList();
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Object[]> titles = new HashMap<>();
+        for (Object[] row : pageRepository.findTitlesByPageIds(pageIds)) {
+            titles.put((Integer) row[0], row);
+        }
+        Map<Integer, String> snippetMap = snippets ? snippetRenderer.render(pageIds, lemmaList) : Map.of();
+
+        for (SearchResults results : searchResultsList) {
+            Object[] row = titles.get(results.getPageId());
+            results.setUrl(row == null ? "" : (String) row[1]);
+            results.setTitle(row == null ? "" : (String) row[2]);
+            results.setSnippet(snippetMap.getOrDefault(results.getPageId(), ""));
         }
     }
 
     /**
      * SearchResults -> searchDataList
      *
+     * @param count общее кол-во найденных страниц, не зависит от offset и limit
      * @return responseTrue
      */
-    private Response setSearchData(List<SearchResults> searchResultsList) {
+    private SearchResponse setSearchData(List<SearchResults> searchResultsList, int count) {
         List<SearchData> searchDataList = new ArrayList<>();
         SearchResponse responseTrue = new SearchResponse();
         responseTrue.setError("");
         responseTrue.setResult(true);
-        responseTrue.setCount(searchResultsList.size());
+        responseTrue.setCount(count);
+        Map<Integer, SiteE> siteMap = new HashMap<>();
         for (SearchResults searchResults : searchResultsList) {
-            SiteE siteE = siteRepository.getSiteEBySiteId(searchResults.getSiteId());
+            SiteE siteE = siteMap.computeIfAbsent(searchResults.getSiteId(), siteRepository::getSiteEBySiteId);
             String uri = searchResults.getUrl().endsWith("/") ? searchResults.getUrl()
                     .substring(0, searchResults.getUrl().length() - 1) : searchResults.getUrl();
             SearchData searchData = new SearchData(siteE.getUrl(),
@@ -304,7 +380,8 @@ public class SearchServiceImpl implements SearchService {
                     uri,
                     searchResults.getTitle(),
                     searchResults.getSnippet(),
-                    searchResults.getRelevance());
+                    searchResults.getRelevance(),
+                    searchResults.getPageId());
             searchDataList.add(searchData);
             log.info("сайт {} релевантность {}", siteE.getUrl() + uri, searchData.getRelevance());
         }
@@ -329,7 +406,7 @@ public class SearchServiceImpl implements SearchService {
         response.setError(errorMessage);
         response.setResult(true);
         response.setCount(0);
-        SearchData searchData = new SearchData("", "", "", "", "", 0);
+        SearchData searchData = new SearchData("", "", "", "", "", 0, 0);
         searchDataList.add(searchData);
         response.setData(searchDataList);
 
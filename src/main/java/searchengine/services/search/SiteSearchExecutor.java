@@ -0,0 +1,116 @@
+package searchengine.services.search;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Параллельный поиск по сайтам на ограниченном пуле потоков.
+ * Время ответа на запрос по всем сайтам равно времени самого медленного сайта, а не сумме.
+ * Сайты, не ответившие за {@link SearchSettings#getSiteTimeout()}, пропускаются (частичный результат).
+ */
+@Slf4j
+@Component
+public class SiteSearchExecutor {
+    private final SearchSettings settings;
+    private final ThreadPoolExecutor executor;
+
+    public SiteSearchExecutor(SearchSettings settings) {
+        this.settings = settings;
+        this.executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("site-search-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Результаты задач поиска по сайтам
+     *
+     * @param <T> - результат одного сайта
+     */
+    @Getter
+    public static final class Results<T> {
+        private final List<T> completed;
+        /**
+         * Часть сайтов не ответила вовремя или завершилась с ошибкой
+         */
+        private final boolean partial;
+
+        private Results(List<T> completed, boolean partial) {
+            this.completed = completed;
+            this.partial = partial;
+        }
+    }
+
+    /**
+     * Выполнение задач параллельно, ожидание не дольше общего таймаута
+     *
+     * @param tasks - задачи поиска по сайтам
+     * @return результаты успевших задач в порядке задач
+     */
+    public <T> Results<T> invokeAll(List<Callable<T>> tasks) {
+        if (tasks.size() == 1) {
+            return invokeInCaller(tasks.get(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        boolean isPartial = false;
+        for (Callable<T> task : tasks) {
+            try {
+                futures.add(executor.submit(task));
+            } catch (RejectedExecutionException e) {
+                log.warn("Search queue is full, site skipped");
+                isPartial = true;
+            }
+        }
+
+        long deadline = System.nanoTime() + settings.getSiteTimeout().toNanos();
+        List<T> completed = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                completed.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Site search timed out after {}", settings.getSiteTimeout());
+                isPartial = true;
+            } catch (ExecutionException e) {
+                log.error("Site search failed: {}", e.getCause().getMessage());
+                isPartial = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                return new Results<>(completed, true);
+            }
+        }
+        return new Results<>(completed, isPartial);
+    }
+
+    /**
+     * Поиск по одному сайту выполняется в потоке запроса без передачи в пул
+     */
+    private <T> Results<T> invokeInCaller(Callable<T> task) {
+        try {
+            return new Results<>(List.of(task.call()), false);
+        } catch (Exception e) {
+            log.error("Site search failed: {}", e.getMessage());
+            return new Results<>(List.of(), true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
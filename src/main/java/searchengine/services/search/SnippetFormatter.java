@@ -1,192 +1,284 @@
 package searchengine.services.search;
 
-import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import searchengine.index.LemmaPositions;
 import searchengine.lemma.LemmaFinder;
-import searchengine.model.Lemma;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class SnippetFormatter {
-    private final LemmaFinder lemmaFinder = LemmaFinder.getInstance();
+    /**
+     * Длина сниппета в символах (все фрагменты вместе)
+     */
+    private static final int SNIPPET_LENGTH = 260;
+    /**
+     * Максимальная длина окна совпадений одного фрагмента в символах
+     */
+    private static final int MAX_WINDOW = 160;
+    /**
+     * Максимальное кол-во фрагментов сниппета
+     */
+    private static final int MAX_FRAGMENTS = 3;
+
+    private final LemmaFinder lemmaFinder;
+
+    /**
+     * Совпадение искомой леммы в тексте
+     *
+     * @param word  - порядковый номер слова
+     * @param term  - номер леммы в списке искомых
+     * @param start - начало слова в тексте
+     * @param end   - конец слова в тексте
+     */
+    private record Hit(int word, int term, int start, int end) {
+    }
+
+    /**
+     * Окно совпадений: hits[from..to] включительно
+     */
+    private record Window(int from, int to) {
+    }
 
     /**
      * Получение сниппета из контекста страницы
      *
      * @param content   для поиска слов и вырезания фрагмента
-     * @param lemmaList список лемм для поиска
+     * @param lemmaList список лемм для поиска, начиная с самой редкой
+     * @param positions позиции лемм страницы, сохранённые при индексации
+     *                  (null - страница лемматизируется заново)
      * @return сниппет
      */
-    public String getSnippet(String content, List<Lemma> lemmaList) {
+    public String getSnippet(String content, List<String> lemmaList, byte[] positions) {
         long startTime = System.currentTimeMillis();
 
-        List<String> splitContent = Arrays.stream(content.trim().split("\\s+")).toList();
-        String[] arraySplitContent = splitContent.toArray(String[]::new);
-
-        Map<String, List<Integer>> listPosition = new HashMap<>();
-        for (Lemma lemma : lemmaList) {
-            List<Integer> listIndexByLemmaFromContent = getListIndexByLemmaFromContent(
-                    arraySplitContent, lemma.getLemma());
-            listPosition.put(lemma.getLemma(), listIndexByLemmaFromContent);
+        Map<String, Integer> terms = new HashMap<>();
+        for (String lemma : lemmaList) {
+            terms.putIfAbsent(lemma, terms.size());
         }
-
-        Map<String, Integer> mapFoundWords = new HashMap<>();
-        try {
-            mapFoundWords = setMapFoundWords(listPosition, lemmaList);
-        } catch (Exception e) {
-            log.warn("debug: mapFoundWords is null");
+        List<Hit> hits = new ArrayList<>();
+        if (positions == null || !readWordPositions(positions, content.length(), terms, hits)) {
+            hits.clear();
+            findWordPositions(content, terms, hits);
         }
+        hits.sort(Comparator.comparingInt(Hit::word));
 
-        String snippet = "";
-        try {
-            snippet = getSnippet(mapFoundWords, splitContent, content);
-        } catch (Exception e) {
-            log.warn("debug: snippet is ''");
-        }
+        String snippet = getSnippet(content, hits, selectWindows(hits, terms.size()));
 
         log.debug("timeElapsed: {}", System.currentTimeMillis() - startTime);
         return snippet;
     }
 
-    private boolean isFoundIndexNear(int prevPosition, int cur) {
-        return prevPosition == cur || prevPosition == cur - 1 || prevPosition == cur - 2
-                || prevPosition == cur - 3 ||
-                prevPosition == cur + 1 || prevPosition == cur + 2 || prevPosition == cur + 3;
+    /**
+     * Один проход лемматизатора по контенту: совпадения искомых лемм в порядке слов
+     *
+     * @param content контекст страницы
+     * @param terms   < лемма, номер леммы >
+     * @param hits    совпадения
+     */
+    private void findWordPositions(String content, Map<String, Integer> terms, List<Hit> hits) {
+        int[] index = {0};
+        lemmaFinder.forEachLemma(content, (start, end, lemma) -> {
+            Integer term = terms.get(lemma);
+            if (term != null) {
+                hits.add(new Hit(index[0], term, start, end));
+            }
+            index[0]++;
+        });
     }
 
     /**
-     * Возвращает список индексов для искомого слова
+     * Совпадения искомых лемм из позиций, сохранённых при индексации
      *
-     * @param arraySplitContent массив слов контекста
-     * @param wordLemma         слово
-     * @return индексы
+     * @param positions     позиции лемм страницы
+     * @param contentLength длина контекста страницы
+     * @param terms         < лемма, номер леммы >
+     * @param hits          совпадения
+     * @return false если позиции не соответствуют контексту (страница изменилась после записи позиций)
      */
-    private List<Integer> getListIndexByLemmaFromContent(String[] arraySplitContent,
-                                                         @NonNull String wordLemma) {
-        return IntStream.range(0, arraySplitContent.length)
-                .mapToObj(index -> {
-                    String w = arraySplitContent[index];
-                    if (w.endsWith("'s")) {
-                        w = w.replace("'s", "");
-                    }
-                    if (w.endsWith(".com")) {
-                        w = w.replace(".com", "");
-                    }
-                    List<String> lemmaListFromQuery = Objects.requireNonNull(lemmaFinder)
-                            .collectLemmas(w)
-                            .keySet()
-                            .stream()
-                            .toList();
-                    String result = "";
-                    if (!lemmaListFromQuery.isEmpty()) {
-                        String regex = "[^A-Za-zА-Яа-я0-9]";
-                        result = lemmaListFromQuery.get(0).replaceAll(regex, " ").trim()
-                                .toLowerCase(Locale.ROOT);
-                    }
-                    return String.format("%d -> %s", index, result);
-                })
-                .filter(s -> s.toLowerCase(Locale.ROOT).endsWith(wordLemma.toLowerCase(Locale.ROOT)))
-                .map(s -> s.substring(0, s.indexOf("->")).trim())
-                .parallel()
-                .mapToInt(Integer::parseInt).boxed().toList();
+    private boolean readWordPositions(byte[] positions, int contentLength, Map<String, Integer> terms,
+                                      List<Hit> hits) {
+        for (Map.Entry<String, int[]> entry : LemmaPositions.decode(positions, terms.keySet()).entrySet()) {
+            int term = terms.get(entry.getKey());
+            int[] values = entry.getValue();
+            for (int i = 0; i < values.length; i += 3) {
+                if (values[i + 2] > contentLength || values[i + 1] > values[i + 2]) {
+                    return false;
+                }
+                hits.add(new Hit(values[i], term, values[i + 1], values[i + 2]));
+            }
+        }
+        return true;
     }
 
-
     /**
-     * Получение mapFoundWords для правильного отображения списка лемм
+     * Выбор окон совпадений для фрагментов сниппета. Первое окно покрывает больше всего
+     * разных искомых лемм при наименьшем размахе, следующие - леммы, не попавшие в предыдущие окна.
      *
-     * @param listPosition список   < лемма, список индексов в контесте для этой леммы>
-     * @param lemmaList    поисковые леммы
-     * @return mapFoundWords    < лемма, индекс >
+     * @param hits      совпадения в порядке слов
+     * @param termCount кол-во искомых лемм
+     * @return окна в порядке следования в тексте
      */
-    private Map<String, Integer> setMapFoundWords(Map<String, List<Integer>> listPosition,
-                                                  List<Lemma> lemmaList) {
-        Map<String, Integer> mapFoundWords = new HashMap<>();
-        for (Lemma lemma : lemmaList) {
-            mapFoundWords.put(lemma.getLemma(), 0);
+    private static List<Window> selectWindows(List<Hit> hits, int termCount) {
+        List<Window> windows = new ArrayList<>();
+        boolean[] covered = new boolean[termCount];
+        while (windows.size() < MAX_FRAGMENTS) {
+            Window window = bestWindow(hits, covered, windows);
+            if (window == null) {
+                break;
+            }
+            windows.add(window);
+            for (int i = window.from(); i <= window.to(); i++) {
+                covered[hits.get(i).term()] = true;
+            }
         }
+        windows.sort(Comparator.comparingInt(Window::from));
+        return windows;
+    }
 
-        AtomicInteger prev = new AtomicInteger(0);
-        listPosition.forEach((k, v) -> {
-            if (!v.isEmpty()) {
-                mapFoundWords.put(k, v.get(0));
-            } else {
-                mapFoundWords.put(k, 1);
+    /**
+     * Скользящее окно за один проход по совпадениям: правая граница двигается по совпадениям,
+     * левая подтягивается, пока окно длиннее {@link #MAX_WINDOW} или крайнее левое совпадение
+     * повторяет лемму, уже имеющуюся в окне.
+     *
+     * @param hits     совпадения в порядке слов
+     * @param covered  леммы, уже попавшие в выбранные окна (не учитываются)
+     * @param selected выбранные окна (их совпадения не используются)
+     * @return окно с наибольшим кол-вом новых лемм и наименьшим размахом в словах или null, если новых лемм нет
+     */
+    private static Window bestWindow(List<Hit> hits, boolean[] covered, List<Window> selected) {
+        int[] counts = new int[covered.length];
+        int distinct = 0;
+        int bestDistinct = 0;
+        int bestSpan = Integer.MAX_VALUE;
+        Window best = null;
+        int left = 0;
+        for (int right = 0; right < hits.size(); right++) {
+            if (isSelected(right, selected)) {
+                // окно не пересекает уже выбранные окна
+                Arrays.fill(counts, 0);
+                distinct = 0;
+                left = right + 1;
+                continue;
             }
-            if (v.size() == 1) {
-                prev.set(v.get(0));
+            Hit hit = hits.get(right);
+            if (!covered[hit.term()] && counts[hit.term()]++ == 0) {
+                distinct++;
+            }
+            while (left < right && (hit.end() - hits.get(left).start() > MAX_WINDOW
+                    || isRedundant(hits.get(left), counts, covered))) {
+                Hit removed = hits.get(left++);
+                if (!covered[removed.term()] && --counts[removed.term()] == 0) {
+                    distinct--;
+                }
+            }
+            int span = hit.word() - hits.get(left).word();
+            if (distinct > bestDistinct || (distinct == bestDistinct && distinct > 0 && span < bestSpan)) {
+                bestDistinct = distinct;
+                bestSpan = span;
+                best = new Window(left, right);
             }
-        });
-        if (prev.get() == 0) {
-            prev.set(listPosition.get(lemmaList.get(0).getLemma()).get(0));
         }
+        return best;
+    }
 
-        mapFoundWords.forEach((k, v) -> {
-            int cur = v;
-            int prevPosition = prev.get();
-            if (isFoundIndexNear(prevPosition, cur)) {
-                prev.set(cur);
-            } else {
-                listPosition.get(k).forEach(val -> {
-                    int cur2 = val;
-                    int prevPosition2 = prev.get();
-                    if (isFoundIndexNear(prevPosition2, cur2)) {
-                        prev.set(cur2);
-                        mapFoundWords.put(k, val);
-                    }
-                });
+    /**
+     * Крайнее левое совпадение не добавляет окну новых лемм
+     */
+    private static boolean isRedundant(Hit hit, int[] counts, boolean[] covered) {
+        return covered[hit.term()] || counts[hit.term()] > 1;
+    }
+
+    private static boolean isSelected(int hitIndex, List<Window> selected) {
+        for (Window window : selected) {
+            if (hitIndex >= window.from() && hitIndex <= window.to()) {
+                return true;
             }
-        });
-        return mapFoundWords;
+        }
+        return false;
     }
 
     /**
-     * Находит нужный фрагмент и выделяет слова жирным
+     * Вырезает фрагменты вокруг окон и выделяет совпадения жирным по их границам в тексте
      *
-     * @param mapFoundWords мапа слово - позиция
-     * @param splitContent  - список слов контента
-     * @param content       контент
+     * @param content контент
+     * @param hits    совпадения в порядке слов
+     * @param windows окна в порядке следования в тексте
      * @return сниппет
      */
-    private String getSnippet(Map<String, Integer> mapFoundWords,
-                              List<String> splitContent, String content) {
-
-        String snippet = "";
-        List<Integer> listPos = mapFoundWords.values().stream().toList();
-
-        int index = 0;
-        for (int i = 0; i < listPos.get(0); i++) {
-            index += splitContent.get(i).length() + 1;
+    private static String getSnippet(String content, List<Hit> hits, List<Window> windows) {
+        if (windows.isEmpty()) {
+            int end = fitToWords(content, 0, Math.min(SNIPPET_LENGTH, content.length()))[1];
+            return "<... " + content.substring(0, end) + " ...>";
+        }
+        int fragmentLength = SNIPPET_LENGTH / windows.size();
+        List<int[]> fragments = new ArrayList<>();
+        for (Window window : windows) {
+            int start = hits.get(window.from()).start();
+            int end = hits.get(window.to()).end();
+            int padding = Math.max(fragmentLength - (end - start), 0) / 2;
+            int[] fragment = fitToWords(content, Math.max(start - padding, 0), Math.min(end + padding, content.length()));
+            fragment[0] = Math.min(fragment[0], start);
+            fragment[1] = Math.max(fragment[1], end);
+            int[] last = fragments.isEmpty() ? null : fragments.get(fragments.size() - 1);
+            if (last != null && fragment[0] <= last[1]) {
+                last[1] = Math.max(last[1], fragment[1]);   // соседние фрагменты склеиваются
+            } else {
+                fragments.add(fragment);
+            }
         }
 
-        int beginIndex;
-        int endIndex;
-
-        int SNIPPET_OFFSET = 130;
-        beginIndex = Math.max(index - SNIPPET_OFFSET, 0);                       // начало сниппета
-        endIndex = Math.min(index + SNIPPET_OFFSET, content.length());          // конец сниппета
-        snippet = "<... " + content.substring(beginIndex, endIndex) + " ...>";  // обрамление
-
-        /* Выделение слов ЖИРНЫМ */
-        for (Integer position : listPos) {
-            String sourceWord = splitContent.get(position);
-            index = 0;
-            for (int j = 0; j < position; j++) {
-                index += splitContent.get(j).length() + 1;
+        StringBuilder snippet = new StringBuilder();
+        for (int[] fragment : fragments) {
+            if (!snippet.isEmpty()) {
+                snippet.append(" ... ");
             }
-            String repWord = " " + content.substring(index, index + sourceWord.length()) + " ";
+            snippet.append(highlight(content, fragment[0], fragment[1], hits));
+        }
+        return "<... " + snippet + " ...>";
+    }
 
-            try {
-                snippet = snippet.replaceAll(repWord, " <b>" + repWord.trim() + "</b> ");
-            } catch (Exception e) {
-                log.warn("repWord: {} snippet: {}", repWord, snippet);
+    /**
+     * Фрагмент текста, в котором все совпадения внутри фрагмента обрамлены тегом b
+     */
+    private static String highlight(String content, int begin, int end, List<Hit> hits) {
+        StringBuilder builder = new StringBuilder(end - begin + 32);
+        int position = begin;
+        for (Hit hit : hits) {
+            if (hit.start() < position || hit.end() > end) {
+                continue;
             }
+            builder.append(content, position, hit.start())
+                    .append("<b>").append(content, hit.start(), hit.end()).append("</b>");
+            position = hit.end();
         }
-        return snippet;
+        return builder.append(content, position, end).toString();
+    }
+
+    /**
+     * Сдвигает границы фрагмента к границам слов, чтобы слова не обрезались, и убирает пробелы по краям
+     *
+     * @return {начало, конец}
+     */
+    private static int[] fitToWords(String content, int begin, int end) {
+        while (begin > 0 && begin < content.length() && !Character.isWhitespace(content.charAt(begin - 1))
+                && !Character.isWhitespace(content.charAt(begin))) {
+            begin++;
+        }
+        while (end < content.length() && end > begin && !Character.isWhitespace(content.charAt(end))
+                && !Character.isWhitespace(content.charAt(end - 1))) {
+            end--;
+        }
+        while (begin < end && Character.isWhitespace(content.charAt(begin))) {
+            begin++;
+        }
+        while (end > begin && Character.isWhitespace(content.charAt(end - 1))) {
+            end--;
+        }
+        return new int[]{begin, end};
     }
 }
@@ -0,0 +1,106 @@
+package searchengine.services.search;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.model.PagePositions;
+import searchengine.repository.PagePositionsRepository;
+import searchengine.repository.PageRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Построение сниппетов порции результатов: тексты и позиции лемм страниц загружаются
+ * одним запросом каждые, сниппеты строятся параллельно на ограниченном пуле потоков.
+ * Сниппеты, не построенные за {@link SearchSettings#getSnippetTimeout()}, остаются пустыми.
+ */
+@Slf4j
+@Component
+public class SnippetRenderer {
+    private final PageRepository pageRepository;
+    private final PagePositionsRepository pagePositionsRepository;
+    private final SnippetFormatter snippetFormatter;
+    private final SearchSettings settings;
+    private final ThreadPoolExecutor executor;
+
+    public SnippetRenderer(PageRepository pageRepository, PagePositionsRepository pagePositionsRepository,
+                           SnippetFormatter snippetFormatter, SearchSettings settings) {
+        this.pageRepository = pageRepository;
+        this.pagePositionsRepository = pagePositionsRepository;
+        this.snippetFormatter = snippetFormatter;
+        this.settings = settings;
+        int threads = settings.getSnippetThreads();
+        // при заполненной очереди сниппет строится в потоке запроса
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("snippet-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Сниппеты страниц
+     *
+     * @param pageIds   - Id страниц
+     * @param lemmaList - искомые леммы, начиная с самой редкой
+     * @return < Id страницы, сниппет >, для ненайденных страниц сниппета нет
+     */
+    public Map<Integer, String> render(Collection<Integer> pageIds, List<String> lemmaList) {
+        Map<Integer, String> snippets = new HashMap<>();
+        if (pageIds.isEmpty() || lemmaList.isEmpty()) {
+            return snippets;
+        }
+        Map<Integer, PagePositions> positions = new HashMap<>();
+        for (PagePositions pagePositions : pagePositionsRepository.findAllById(pageIds)) {
+            positions.put(pagePositions.getPageId(), pagePositions);
+        }
+
+        Map<Integer, Future<String>> futures = new LinkedHashMap<>();
+        for (Object[] row : pageRepository.findContentsByPageIds(pageIds)) {
+            int pageId = (Integer) row[0];
+            String content = (String) row[1];
+            byte[] pagePositions = positionsOf(positions.get(pageId), (Long) row[2]);
+            futures.put(pageId, executor.submit(() ->
+                    snippetFormatter.getSnippet(content, lemmaList, pagePositions)));
+        }
+
+        long deadline = System.nanoTime() + settings.getSnippetTimeout().toNanos();
+        for (Map.Entry<Integer, Future<String>> entry : futures.entrySet()) {
+            Future<String> future = entry.getValue();
+            try {
+                snippets.put(entry.getKey(), future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Snippet of page {} timed out after {}", entry.getKey(), settings.getSnippetTimeout());
+                snippets.put(entry.getKey(), "");
+            } catch (ExecutionException e) {
+                log.error("Snippet of page {} failed: {}", entry.getKey(), e.getCause().getMessage());
+                snippets.put(entry.getKey(), "");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                break;
+            }
+        }
+        return snippets;
+    }
+
+    /**
+     * Сохранённые позиции, если они записаны по текущему тексту страницы
+     *
+     * @return позиции или null - страница лемматизируется заново
+     */
+    private static byte[] positionsOf(PagePositions pagePositions, Long contentHash) {
+        if (pagePositions == null || contentHash == null || !contentHash.equals(pagePositions.getContentHash())) {
+            return null;
+        }
+        return pagePositions.getPositions();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,180 @@
+package searchengine.services.search;
+
+import searchengine.model.SearchResults;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Лучшие k страниц сайта по релевантности. Страницы проходят через ограниченную min-кучу
+ * на примитивных массивах: память не зависит от кол-ва найденных страниц,
+ * объекты {@link SearchResults} создаются только для выводимой порции.
+ */
+public final class TopPages {
+    private final int siteId;
+    private final int capacity;
+    private final int[] pageIds;
+    private final double[] scores;
+    private int size;
+    private int total;
+    private double maxScore;
+
+    /**
+     * @param siteId   - id сайта
+     * @param capacity - сколько лучших страниц хранить (offset + limit)
+     */
+    public TopPages(int siteId, int capacity) {
+        this.siteId = siteId;
+        this.capacity = Math.max(capacity, 0);
+        this.pageIds = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    /**
+     * Общее кол-во найденных страниц сайта
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int pageId(int i) {
+        return pageIds[i];
+    }
+
+    /**
+     * Относительная релевантность после {@link #finish()}: абсолютная, делённая на максимальную по сайту
+     */
+    public double relevance(int i) {
+        return maxScore == 0 ? 0 : scores[i] / maxScore;
+    }
+
+    /**
+     * Найденная страница
+     *
+     * @param pageId - id страницы
+     * @param score  - абсолютная релевантность
+     */
+    public void offer(int pageId, double score) {
+        if (score <= 0) {
+            return;
+        }
+        total++;
+        maxScore = Math.max(maxScore, score);
+        if (size < capacity) {
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && isWorse(0, pageId, score)) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Сортировка кучи на месте по убыванию релевантности
+     *
+     * @return this
+     */
+    public TopPages finish() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return this;
+    }
+
+    /**
+     * K-way слияние отсортированных результатов сайтов по убыванию релевантности
+     *
+     * @param sites  - результаты сайтов после {@link #finish()}
+     * @param offset - сдвиг от начала общего списка
+     * @param limit  - кол-во результатов
+     * @return результаты поиска с offset по offset + limit
+     */
+    public static List<SearchResults> merge(List<TopPages> sites, int offset, int limit) {
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(Comparator
+                .comparingDouble((int[] cursor) -> -sites.get(cursor[0]).relevance(cursor[1]))
+                .thenComparingInt(cursor -> sites.get(cursor[0]).getSiteId()));
+        for (int i = 0; i < sites.size(); i++) {
+            if (sites.get(i).size() > 0) {
+                cursors.add(new int[]{i, 0});
+            }
+        }
+        List<SearchResults> results = new ArrayList<>(Math.max(limit, 0));
+        int position = 0;
+        while (!cursors.isEmpty() && results.size() < limit) {
+            int[] cursor = cursors.poll();
+            TopPages site = sites.get(cursor[0]);
+            if (position++ >= offset) {
+                SearchResults searchResults = new SearchResults();
+                searchResults.setNumber(position);
+                searchResults.setSiteId(site.getSiteId());
+                searchResults.setPageId(site.pageId(cursor[1]));
+                searchResults.setRelevance(site.relevance(cursor[1]));
+                results.add(searchResults);
+            }
+            if (++cursor[1] < site.size()) {
+                cursors.add(cursor);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Элемент кучи i хуже страницы (pageId, score): меньше релевантность,
+     * при равной - больше pageId
+     */
+    private boolean isWorse(int i, int pageId, double score) {
+        return scores[i] < score || (scores[i] == score && pageIds[i] > pageId);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(i, pageIds[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < end && isWorse(left, pageIds[worst], scores[worst])) {
+                worst = left;
+            }
+            if (right < end && isWorse(right, pageIds[worst], scores[worst])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int pageId = pageIds[i];
+        pageIds[i] = pageIds[j];
+        pageIds[j] = pageId;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -0,0 +1,75 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+    // загрузка из БД не вызывается, индекс заполняется через add()
+    private final InvertedIndex index = new InvertedIndex(null);
+
+    @Test
+    void intersectsListsAndSumsRanks() {
+        for (int pageId = 1; pageId <= 1_000; pageId++) {
+            index.add(1, 10, pageId, 1f);
+        }
+        for (int pageId : new int[]{3, 500, 999, 1_001}) {
+            index.add(1, 20, pageId, 2f);
+        }
+        for (int pageId = 2; pageId <= 1_000; pageId += 2) {
+            index.add(1, 30, pageId, 0.5f);
+        }
+
+        InvertedIndex.Matches matches = index.intersect(new int[]{10, 20, 30});
+
+        assertEquals(1, matches.size());
+        assertEquals(500, matches.pageId(0));
+        assertEquals(3.5, matches.score(0), 1e-9);
+    }
+
+    @Test
+    void intersectionIsEmptyForUnknownLemma() {
+        index.add(1, 10, 1, 1f);
+
+        assertEquals(0, index.intersect(new int[]{10, 99}).size());
+        assertEquals(0, index.intersect(new int[0]).size());
+    }
+
+    @Test
+    void singleLemmaReturnsAllPages() {
+        index.add(1, 10, 7, 1f);
+        index.add(1, 10, 3, 2f);
+
+        InvertedIndex.Matches matches = index.intersect(new int[]{10});
+
+        assertEquals(2, matches.size());
+        assertEquals(3, matches.pageId(0));
+        assertEquals(7, matches.pageId(1));
+    }
+
+    @Test
+    void removedPageIsNotFound() {
+        index.add(1, 10, 1, 1f);
+        index.add(1, 10, 2, 1f);
+        index.add(1, 20, 2, 1f);
+
+        index.removePage(2, List.of(10, 20));
+
+        assertEquals(0, index.intersect(new int[]{10, 20}).size());
+        assertEquals(0, index.getPostings(20).size());
+        assertEquals(1, index.getPostings(10).size());
+    }
+
+    @Test
+    void removesSiteLemmas() {
+        index.add(1, 10, 1, 1f);
+        index.add(2, 20, 2, 1f);
+
+        index.removeSite(1);
+
+        assertEquals(0, index.getPostings(10).size());
+        assertEquals(1, index.getPostings(20).size());
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LemmaPositionsTest {
+
+    @Test
+    void decodesEncodedPositions() {
+        LemmaPositions.Builder builder = new LemmaPositions.Builder();
+        builder.add(0, 5, "кошка");
+        builder.add(6, 12, "собака");
+        builder.add(13, 18, "кошка");
+
+        Map<String, int[]> positions = LemmaPositions.decode(builder.encode(), List.of("кошка", "собака"));
+
+        assertArrayEquals(new int[]{0, 0, 5, 2, 13, 18}, positions.get("кошка"));
+        assertArrayEquals(new int[]{1, 6, 12}, positions.get("собака"));
+    }
+
+    @Test
+    void decodesMultiByteVarInts() {
+        LemmaPositions.Builder builder = new LemmaPositions.Builder();
+        builder.add(100, 110, "first");
+        for (int i = 0; i < 300; i++) {
+            builder.add(1_000 + i * 7, 1_005 + i * 7, "filler");
+        }
+        builder.add(3_000_000, 3_000_200, "first");
+
+        int[] positions = LemmaPositions.decode(builder.encode(), Set.of("first")).get("first");
+
+        assertArrayEquals(new int[]{0, 100, 110, 301, 3_000_000, 3_000_200}, positions);
+    }
+
+    @Test
+    void skipsNotRequestedLemmas() {
+        LemmaPositions.Builder builder = new LemmaPositions.Builder();
+        builder.add(0, 4, "один");
+        builder.add(5, 8, "два");
+        builder.add(9, 12, "три");
+
+        Map<String, int[]> positions = LemmaPositions.decode(builder.encode(), List.of("три", "пять"));
+
+        assertEquals(Set.of("три"), positions.keySet());
+        assertArrayEquals(new int[]{2, 9, 12}, positions.get("три"));
+    }
+
+    @Test
+    void countsMentions() {
+        LemmaPositions.Builder builder = new LemmaPositions.Builder();
+        builder.add(0, 1, "a");
+        builder.add(2, 3, "b");
+        builder.add(4, 5, "a");
+
+        assertEquals(Map.of("a", 2, "b", 1), builder.getCounts());
+    }
+
+    @Test
+    void decodesEmptyPage() {
+        byte[] data = new LemmaPositions.Builder().encode();
+
+        assertTrue(LemmaPositions.decode(data, List.of("a")).isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateIndexTest {
+    private static final String ARTICLE = "Поисковый движок обходит страницы сайта, сохраняет их текст "
+            + "и строит индекс лемм. По запросу пользователя движок находит страницы, содержащие все "
+            + "леммы запроса, и сортирует их по релевантности. Для каждой страницы строится сниппет "
+            + "с выделенными словами запроса.";
+
+    @Test
+    void sameTextHasSameFingerprint() {
+        long first = SimHash.fingerprint(ARTICLE, 10);
+        long second = SimHash.fingerprint(ARTICLE.toUpperCase(), 10);
+
+        assertNotEquals(SimHash.NONE, first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void shortTextHasNoFingerprint() {
+        assertEquals(SimHash.NONE, SimHash.fingerprint("всего три слова", 10));
+    }
+
+    @Test
+    void similarTextsAreCloserThanDifferentOnes() {
+        long original = SimHash.fingerprint(ARTICLE, 10);
+        long edited = SimHash.fingerprint(ARTICLE + " Версия для печати.", 10);
+        long other = SimHash.fingerprint("Рецепт пирога: смешать муку, яйца и сахар, добавить молоко, "
+                + "выпекать в духовке сорок минут при температуре двести градусов, подавать тёплым.", 10);
+
+        assertTrue(SimHash.distance(original, edited) < SimHash.distance(original, other));
+    }
+
+    @Test
+    void findsEveryFingerprintWithinMaxDistance() {
+        // отпечатки делятся на maxDistance + 1 полос: при не более чем maxDistance
+        // отличающихся битах хотя бы одна полоса совпадает
+        Random random = new Random(42);
+        for (int maxDistance : new int[]{0, 3, 7}) {
+            for (int round = 0; round < 500; round++) {
+                NearDuplicateIndex index = new NearDuplicateIndex(maxDistance, 10, 10);
+                long fingerprint = random.nextLong() | 1L;
+                index.add(fingerprint, "/original");
+
+                long changed = flipBits(fingerprint, random.nextInt(maxDistance + 1), random);
+
+                assertEquals("/original", index.findOrAdd(changed, "/copy"),
+                        "maxDistance " + maxDistance + ", distance " + SimHash.distance(fingerprint, changed));
+            }
+        }
+    }
+
+    @Test
+    void doesNotCollapseFingerprintsBeyondMaxDistance() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3, 10, 10);
+        // отличия в 4 битах в одной полосе, остальные полосы совпадают
+        long fingerprint = 0x0F0F_0F0F_0F0F_0F0FL;
+        index.add(fingerprint, "/original");
+
+        assertNull(index.findOrAdd(fingerprint ^ 0xFL, "/other"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void reportKeepsCountersAndExamples() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3, 10, 1);
+        index.findOrAdd(0xFF00L, "/a");
+        index.findOrAdd(0xFF01L, "/b");
+        index.findOrAdd(0xFF03L, "/c");
+
+        NearDuplicateIndex.Report report = index.getReport();
+
+        assertEquals(3, report.getCheckedPages());
+        assertEquals(2, report.getCollapsedPages());
+        assertEquals(1, report.getExamples().size());
+        assertEquals("/a", report.getExamples().get(0).getOriginalPath());
+    }
+
+    private static long flipBits(long fingerprint, int count, Random random) {
+        long changed = fingerprint;
+        while (SimHash.distance(fingerprint, changed) < count) {
+            changed ^= 1L << random.nextInt(64);
+        }
+        return changed;
+    }
+}
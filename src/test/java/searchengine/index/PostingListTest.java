@@ -0,0 +1,87 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingListTest {
+
+    @Test
+    void keepsPagesSortedWhenAddedOutOfOrder() {
+        PostingList list = new PostingList(1);
+        for (int pageId : new int[]{5, 1, 9, 3, 7, 2}) {
+            list.put(pageId, pageId / 10f);
+        }
+
+        PostingList.Postings postings = list.snapshot();
+        assertArrayEquals(new int[]{1, 2, 3, 5, 7, 9}, pageIds(postings));
+        assertEquals(0.3f, postings.rank(2));
+    }
+
+    @Test
+    void updatesRankOfExistingPage() {
+        PostingList list = new PostingList(1);
+        list.put(1, 1f);
+        list.put(2, 2f);
+        list.put(1, 5f);
+
+        assertEquals(2, list.size());
+        assertEquals(5f, list.snapshot().rank(0));
+    }
+
+    @Test
+    void snapshotIsNotChangedByLaterWrites() {
+        PostingList list = new PostingList(1);
+        list.put(1, 1f);
+        list.put(3, 3f);
+        PostingList.Postings before = list.snapshot();
+
+        list.put(2, 2f);
+        list.remove(1);
+
+        assertArrayEquals(new int[]{1, 3}, pageIds(before));
+        assertArrayEquals(new int[]{2, 3}, pageIds(list.snapshot()));
+    }
+
+    @Test
+    void removesPage() {
+        PostingList list = new PostingList(1);
+        list.put(1, 1f);
+        list.put(2, 2f);
+
+        assertTrue(list.remove(1));
+        assertFalse(list.remove(1));
+        assertArrayEquals(new int[]{2}, pageIds(list.snapshot()));
+    }
+
+    @Test
+    void buildsFromUnsortedPairsKeepingOnePagePerId() {
+        PostingList list = PostingList.fromUnsorted(1, new int[]{4, 2, 4, 1}, new float[]{1f, 2f, 3f, 4f}, 4);
+
+        assertArrayEquals(new int[]{1, 2, 4}, pageIds(list.snapshot()));
+    }
+
+    @Test
+    void advanceFindsFirstPageNotLessThanTarget() {
+        PostingList list = new PostingList(1);
+        for (int pageId = 0; pageId < 100; pageId += 2) {
+            list.put(pageId, 1f);
+        }
+        PostingList.Postings postings = list.snapshot();
+
+        assertEquals(0, postings.advance(0, 0));
+        assertEquals(5, postings.advance(0, 10));
+        assertEquals(6, postings.advance(0, 11));
+        assertEquals(30, postings.advance(6, 59));
+        assertEquals(postings.size(), postings.advance(0, 1_000));
+        assertEquals(10, postings.advance(10, 3));
+    }
+
+    private static int[] pageIds(PostingList.Postings postings) {
+        int[] pageIds = new int[postings.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = postings.pageId(i);
+        }
+        return pageIds;
+    }
+}
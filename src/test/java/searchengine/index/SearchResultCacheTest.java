@@ -0,0 +1,50 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+    private final SearchResultCache cache = new SearchResultCache(new SearchSettings());
+
+    @Test
+    void storesResultOfUnchangedIndex() {
+        long version = cache.getVersion();
+        SearchResultCache.Entry entry = entry(new int[]{1});
+
+        cache.put("key", entry, version);
+
+        assertSame(entry, cache.get("key"));
+    }
+
+    @Test
+    void ignoresResultOfSearchStartedBeforeIndexChange() {
+        long version = cache.getVersion();
+        cache.invalidateSite(1);
+
+        cache.put("key", entry(new int[]{1}), version);
+
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    void invalidatesOnlyResultsCoveringSite() {
+        long version = cache.getVersion();
+        cache.put("site1", entry(new int[]{1}), version);
+        cache.put("site2", entry(new int[]{2}), version);
+        cache.put("all", entry(null), version);
+
+        cache.invalidateSite(1);
+
+        assertNull(cache.get("site1"));
+        assertNull(cache.get("all"));
+        assertNotNull(cache.get("site2"));
+    }
+
+    private static SearchResultCache.Entry entry(int[] scopeSiteIds) {
+        return new SearchResultCache.Entry(scopeSiteIds, List.of(), new int[0], new int[0], new float[0], 0);
+    }
+}
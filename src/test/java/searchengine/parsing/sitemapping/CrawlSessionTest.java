@@ -0,0 +1,33 @@
+package searchengine.parsing.sitemapping;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.UrlNormalizerSettings;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlSessionTest {
+
+    @Test
+    void keepsWwwInDomainWhenNotStripped() {
+        UrlNormalizerSettings settings = new UrlNormalizerSettings();
+        settings.setStripWww(false);
+        CrawlSession session = new CrawlSession(1, "https://site.ru", "https://www.site.ru",
+                null, null, new UrlNormalizer(settings), null, false);
+
+        assertEquals("https://www.site.ru", session.getDomain());
+        assertEquals("https://www.site.ru/news", session.normalizeLink("https://www.site.ru/news"));
+        assertNull(session.normalizeLink("https://other.ru/news"));
+        session.close();
+    }
+
+    @Test
+    void stripsWwwFromStartUrl() {
+        CrawlSession session = new CrawlSession(1, "https://site.ru", "https://www.site.ru",
+                null, null, new UrlNormalizer(new UrlNormalizerSettings()), null, false);
+
+        assertEquals("https://site.ru", session.getDomain());
+        assertEquals("https://site.ru/", session.getUrl());
+        assertEquals("https://site.ru/news", session.normalizeLink("https://www.site.ru/news"));
+        session.close();
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.parsing.sitemapping;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import searchengine.config.HttpSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpFetchClientTest {
+    private static final int MAX_BODY_SIZE = 1024;
+
+    private HttpServer server;
+    private HttpFetchClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/small", exchange -> respond(exchange, "a".repeat(100).getBytes(), null, false));
+        server.createContext("/large", exchange -> respond(exchange, "a".repeat(5000).getBytes(), null, false));
+        server.createContext("/chunked", exchange -> respond(exchange, "a".repeat(5000).getBytes(), null, true));
+        server.createContext("/gzip", exchange -> respond(exchange, gzip("b".repeat(500)), "gzip", false));
+        server.createContext("/gzip-bomb", exchange -> respond(exchange, gzip("b".repeat(50_000)), "gzip", false));
+        server.start();
+        HttpSettings settings = new HttpSettings();
+        settings.setMaxBodySize(DataSize.ofBytes(MAX_BODY_SIZE));
+        client = new HttpFetchClient(settings);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        client.shutdown();
+    }
+
+    @Test
+    void readsBodyWithinLimit() throws Exception {
+        assertEquals("a".repeat(100), client.getFile(url("/small")).getText());
+    }
+
+    @Test
+    void decodesGzip() throws Exception {
+        assertEquals("b".repeat(500), client.getFile(url("/gzip")).getText());
+    }
+
+    @Test
+    void rejectsBodyLargerThanLimitByContentLength() {
+        assertThrows(IOException.class, () -> client.getFile(url("/large")));
+    }
+
+    @Test
+    void rejectsBodyLargerThanLimitWithoutContentLength() {
+        assertThrows(IOException.class, () -> client.getFile(url("/chunked")));
+    }
+
+    @Test
+    void rejectsBodyLargerThanLimitAfterDecoding() {
+        assertThrows(IOException.class, () -> client.getFile(url("/gzip-bomb")));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body, String encoding,
+                                boolean isChunked) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if (encoding != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        exchange.sendResponseHeaders(200, isChunked ? 0 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.parsing.sitemapping;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingHtmlExtractorTest {
+    private static final String BASE_URI = "https://site.ru/news/item.html";
+
+    @Test
+    void matchesJsoupOnTypicalPage() throws IOException {
+        assertSameAsJsoup("""
+                <!DOCTYPE html>
+                <html lang="ru">
+                <head>
+                  <meta charset="utf-8">
+                  <title>Новости &amp; события</title>
+                  <link rel="canonical" href="/news/item">
+                  <style>body { color: red; }</style>
+                  <script>var a = "<a href='/fake'>";</script>
+                </head>
+                <body>
+                  <h1>Заголовок</h1>
+                  <p>Первый   абзац с <b>выделенным</b> словом
+                     и <a href="second.html">ссылкой</a>.</p>
+                  <div>Блок<br>после переноса</div>
+                  <ul><li>один</li><li>два</li></ul>
+                  <a href="https://other.ru/x">внешняя</a>
+                  <a href="?page=2#top">страница 2</a>
+                  <!-- <a href="/commented">скрыто</a> -->
+                  <template><p>шаблон</p></template>
+                  <p>Символы: &lt;тег&gt; &quot;кавычки&quot; &nbsp;пробел &#169; &copy;</p>
+                </body>
+                </html>
+                """);
+    }
+
+    @Test
+    void matchesJsoupWithBaseHref() throws IOException {
+        assertSameAsJsoup("""
+                <html><head><base href="https://cdn.site.ru/root/"><title>T</title></head>
+                <body><a href="page">относительная</a><a href='/abs'>абсолютная</a><a href=plain>без кавычек</a></body>
+                </html>
+                """);
+    }
+
+    @Test
+    void pageWithoutHeadAndBody() throws IOException {
+        assertSameAsJsoup("<title>Короткая</title>Просто текст <a href=/a>ссылка</a>");
+    }
+
+    private static void assertSameAsJsoup(String html) throws IOException {
+        Document document = Jsoup.parse(html, BASE_URI);
+        Element canonical = document.selectFirst("link[rel=canonical][href]");
+
+        PageContent content = StreamingHtmlExtractor.extract(new StringReader(html), BASE_URI);
+
+        assertEquals(document.title(), content.getTitle());
+        assertEquals(document.body().text(), content.getText());
+        assertEquals(document.select("a[href]").stream().map(link -> link.attr("abs:href"))
+                .collect(Collectors.toList()), content.getLinks());
+        assertEquals(canonical == null ? null : canonical.attr("abs:href"), content.getCanonicalUrl());
+    }
+}
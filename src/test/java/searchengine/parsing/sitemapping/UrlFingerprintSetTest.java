@@ -0,0 +1,48 @@
+package searchengine.parsing.sitemapping;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlFingerprintSetTest {
+
+    @Test
+    void addsEachUrlOnce() {
+        UrlFingerprintSet set = new UrlFingerprintSet();
+
+        assertTrue(set.add("https://site.ru/a"));
+        assertFalse(set.add("https://site.ru/a"));
+        assertTrue(set.add("https://site.ru/b"));
+        assertTrue(set.contains("https://site.ru/a"));
+        assertFalse(set.contains("https://site.ru/c"));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void keepsUrlsWhileSegmentsGrow() {
+        UrlFingerprintSet set = new UrlFingerprintSet();
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            assertTrue(set.add("https://site.ru/page/" + i));
+        }
+
+        assertEquals(count, set.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(set.contains("https://site.ru/page/" + i));
+            assertFalse(set.add("https://site.ru/page/" + i));
+        }
+        assertFalse(set.contains("https://site.ru/page/" + count));
+    }
+
+    @Test
+    void clearRemovesAllUrls() {
+        UrlFingerprintSet set = new UrlFingerprintSet();
+        set.add("https://site.ru/a");
+
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains("https://site.ru/a"));
+        assertTrue(set.add("https://site.ru/a"));
+    }
+}
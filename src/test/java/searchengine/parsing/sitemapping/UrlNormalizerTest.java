@@ -0,0 +1,71 @@
+package searchengine.parsing.sitemapping;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.UrlNormalizerSettings;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlNormalizerTest {
+    private final UrlNormalizer normalizer = new UrlNormalizer(new UrlNormalizerSettings());
+
+    @Test
+    void lowercasesSchemeAndHostAndStripsWww() {
+        assertEquals("https://site.ru/News", normalizer.normalize("HTTPS://WWW.Site.RU/News"));
+    }
+
+    @Test
+    void removesDefaultPortAndFragment() {
+        assertEquals("http://site.ru/a", normalizer.normalize("http://site.ru:80/a#top"));
+        assertEquals("https://site.ru/a", normalizer.normalize("https://site.ru:443/a"));
+        assertEquals("https://site.ru:8443/a", normalizer.normalize("https://site.ru:8443/a"));
+    }
+
+    @Test
+    void normalizesPath() {
+        assertEquals("https://site.ru/", normalizer.normalize("https://site.ru"));
+        assertEquals("https://site.ru/b/c", normalizer.normalize("https://site.ru//a/../b/./c"));
+        assertEquals("https://site.ru/news/", normalizer.normalize("https://site.ru/news/index.html"));
+    }
+
+    @Test
+    void filtersAndSortsQueryParams() {
+        assertEquals("https://site.ru/list?a=1&page=2",
+                normalizer.normalize("https://site.ru/list?page=2&utm_source=mail&a=1&fbclid=x"));
+        assertEquals("https://site.ru/list", normalizer.normalize("https://site.ru/list?utm_medium=cpc"));
+    }
+
+    @Test
+    void keepsOnlyAllowedParams() {
+        UrlNormalizerSettings settings = new UrlNormalizerSettings();
+        settings.setAllowedParams(List.of("page", "q*"));
+        UrlNormalizer allowing = new UrlNormalizer(settings);
+
+        assertEquals("https://site.ru/s?page=2&query=x", allowing.normalize("https://site.ru/s?sort=asc&query=x&page=2"));
+    }
+
+    @Test
+    void rejectsUrlsNotToLoad() {
+        assertNull(normalizer.normalize("https://site.ru/photo.JPG"));
+        assertNull(normalizer.normalize("mailto:info@site.ru"));
+        assertNull(normalizer.normalize("ftp://site.ru/file"));
+        assertNull(normalizer.normalize("/relative/path"));
+        assertNull(normalizer.normalize("https://site.ru/bad path"));
+        assertNull(normalizer.normalize(" "));
+        assertNull(normalizer.normalize(null));
+    }
+
+    @Test
+    void originFollowsStripWwwSetting() {
+        assertEquals("https://site.ru", normalizer.origin("https://WWW.site.ru/news"));
+
+        UrlNormalizerSettings settings = new UrlNormalizerSettings();
+        settings.setStripWww(false);
+        UrlNormalizer keepingWww = new UrlNormalizer(settings);
+
+        assertEquals("https://www.site.ru", keepingWww.origin("https://www.site.ru"));
+        assertEquals("https://www.site.ru:8443", keepingWww.origin("https://www.site.ru:8443/a?b=1"));
+        assertNull(keepingWww.origin("/relative/path"));
+    }
+}
@@ -0,0 +1,80 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmaSettings;
+import searchengine.index.LemmaPositions;
+import searchengine.lemma.LemmaFinder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Слова в текстах - в начальной форме, чтобы проверка не зависела от словарей морфологии
+ */
+class SnippetFormatterTest {
+    private static final String FILLER = "Далее следует длинный текст без искомых слов, который заполняет страницу "
+            + "и отделяет один фрагмент от другого на достаточное расстояние. ";
+
+    private static LemmaFinder lemmaFinder;
+    private static SnippetFormatter formatter;
+
+    @BeforeAll
+    static void loadMorphology() throws IOException {
+        lemmaFinder = new LemmaFinder(new LemmaSettings());
+        formatter = new SnippetFormatter(lemmaFinder);
+    }
+
+    @Test
+    void prefersWindowWithAllTermsOverRepeatedTerm() {
+        String content = "Кошка, кошка и снова кошка гуляет во дворе. " + FILLER + FILLER
+                + "Вечером собака и кошка сидели у калитки. " + FILLER;
+
+        String snippet = formatter.getSnippet(content, List.of("собака", "кошка"), null);
+
+        assertTrue(snippet.contains("<b>собака</b> и <b>кошка</b>"), snippet);
+    }
+
+    @Test
+    void picksShortestWindowAmongRepeats() {
+        String content = "Собака далеко, а потом ещё много слов, и только тут кошка. " + FILLER + FILLER
+                + "Собака кошка. " + FILLER;
+
+        String snippet = formatter.getSnippet(content, List.of("собака", "кошка"), null);
+
+        assertTrue(snippet.contains("<b>Собака</b> <b>кошка</b>"), snippet);
+    }
+
+    @Test
+    void addsFragmentForTermMissingFromFirstWindow() {
+        String content = "Собака лает. " + FILLER + FILLER + FILLER + "Кошка спит. " + FILLER;
+
+        String snippet = formatter.getSnippet(content, List.of("собака", "кошка"), null);
+
+        assertTrue(snippet.contains("<b>Собака</b>"), snippet);
+        assertTrue(snippet.contains("<b>Кошка</b>"), snippet);
+        assertTrue(snippet.contains(" ... "), snippet);
+    }
+
+    @Test
+    void storedPositionsGiveSameSnippet() {
+        String content = "Кошка, кошка и снова кошка гуляет во дворе. " + FILLER
+                + "Вечером собака и кошка сидели у калитки. " + FILLER;
+        LemmaPositions.Builder builder = new LemmaPositions.Builder();
+        lemmaFinder.forEachLemma(content, builder::add);
+        List<String> lemmas = List.of("собака", "кошка");
+
+        assertEquals(formatter.getSnippet(content, lemmas, null),
+                formatter.getSnippet(content, lemmas, builder.encode()));
+    }
+
+    @Test
+    void textWithoutTermsStartsFromBeginning() {
+        String snippet = formatter.getSnippet(FILLER, List.of("собака"), null);
+
+        assertTrue(snippet.startsWith("<... Далее следует"), snippet);
+        assertFalse(snippet.contains("<b>"), snippet);
+    }
+}
@@ -0,0 +1,88 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.Test;
+import searchengine.model.SearchResults;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopPagesTest {
+
+    @Test
+    void keepsBestPagesInDescendingOrder() {
+        TopPages top = new TopPages(1, 3);
+        double[] scores = {5, 1, 9, 7, 3, 8};
+        for (int pageId = 0; pageId < scores.length; pageId++) {
+            top.offer(pageId, scores[pageId]);
+        }
+        top.finish();
+
+        assertEquals(6, top.getTotal());
+        assertEquals(3, top.size());
+        assertArrayEquals(new int[]{2, 5, 3}, pageIds(top));
+        assertEquals(1.0, top.relevance(0));
+        assertEquals(7.0 / 9, top.relevance(2), 1e-9);
+    }
+
+    @Test
+    void tiesAreOrderedBySmallerPageId() {
+        TopPages top = new TopPages(1, 3);
+        for (int pageId : new int[]{40, 10, 50, 20, 30}) {
+            top.offer(pageId, 1.0);
+        }
+        top.finish();
+
+        assertArrayEquals(new int[]{10, 20, 30}, pageIds(top));
+    }
+
+    @Test
+    void ignoresPagesWithoutScore() {
+        TopPages top = new TopPages(1, 2);
+        top.offer(1, 0);
+        top.offer(2, -1);
+        top.finish();
+
+        assertEquals(0, top.getTotal());
+        assertEquals(0, top.size());
+    }
+
+    @Test
+    void zeroCapacityCountsPagesOnly() {
+        TopPages top = new TopPages(1, 0);
+        top.offer(1, 1.0);
+        top.offer(2, 2.0);
+        top.finish();
+
+        assertEquals(2, top.getTotal());
+        assertEquals(0, top.size());
+    }
+
+    @Test
+    void mergesSitesWithOffsetAndLimit() {
+        TopPages first = new TopPages(1, 3);
+        first.offer(11, 10);
+        first.offer(12, 5);
+        first.offer(13, 1);
+        TopPages second = new TopPages(2, 3);
+        second.offer(21, 4);
+        second.offer(22, 3);
+        List<TopPages> sites = List.of(first.finish(), second.finish());
+
+        List<SearchResults> all = TopPages.merge(sites, 0, 10);
+        List<SearchResults> page = TopPages.merge(sites, 1, 2);
+
+        // релевантность относительная по сайту: 1.0, 1.0, 0.75, 0.5, 0.1
+        assertEquals(List.of(11, 21, 22, 12, 13), all.stream().map(SearchResults::getPageId).toList());
+        assertEquals(List.of(21, 22), page.stream().map(SearchResults::getPageId).toList());
+        assertEquals(2, page.get(0).getNumber());
+    }
+
+    private static int[] pageIds(TopPages top) {
+        int[] pageIds = new int[top.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = top.pageId(i);
+        }
+        return pageIds;
+    }
+}